@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.Arrays;
+
+/**
+ * An immutable chain of color adjustments that folds into one 4x5 color
+ * matrix. Equal chains share one filter in ColorFilterCache.
+ */
+public final class ColorAdjustments {
+
+    public static final ColorAdjustments IDENTITY = new ColorAdjustments(new int[0], new float[0], new int[0]);
+
+    private static final int OP_SATURATION = 0;
+    private static final int OP_BRIGHTNESS = 1;
+    private static final int OP_CONTRAST = 2;
+    private static final int OP_HUE = 3;
+    private static final int OP_MULTIPLY = 4;
+    private static final int OP_FILL = 5;
+
+    /* luminance weights used by ColorMatrix#setSaturation */
+    private static final float LUM_R = 0.213f;
+    private static final float LUM_G = 0.715f;
+    private static final float LUM_B = 0.072f;
+
+    private final int[] mOps;
+    private final float[] mValues;
+    private final int[] mColors;
+    private final int mHash;
+
+    private ColorAdjustments(int[] ops, float[] values, int[] colors) {
+        mOps = ops;
+        mValues = values;
+        mColors = colors;
+        mHash = (Arrays.hashCode(ops) * 31 + Arrays.hashCode(values)) * 31 + Arrays.hashCode(colors);
+    }
+
+    /**
+     * @param saturation 0 is grayscale, 1 leaves the colors unchanged
+     */
+    public ColorAdjustments saturation(float saturation) {
+        return append(OP_SATURATION, saturation, 0);
+    }
+
+    /**
+     * @param brightness added to each color channel, -1 ... 1 (0 is unchanged)
+     */
+    public ColorAdjustments brightness(float brightness) {
+        return append(OP_BRIGHTNESS, brightness, 0);
+    }
+
+    /**
+     * @param contrast scale around mid gray, 1 is unchanged
+     */
+    public ColorAdjustments contrast(float contrast) {
+        return append(OP_CONTRAST, contrast, 0);
+    }
+
+    /**
+     * Rotates hues like {@link HueRotation} (and ColorPickerView) does.
+     */
+    public ColorAdjustments hue(float degrees) {
+        return append(OP_HUE, degrees, 0);
+    }
+
+    /**
+     * Multiplies every channel, alpha included, by those of color : what
+     * PorterDuff.Mode.MULTIPLY does with an unpremultiplied tint.
+     */
+    public ColorAdjustments multiply(int color) {
+        return append(OP_MULTIPLY, 0, color);
+    }
+
+    /**
+     * Replaces the RGB of every pixel by that of color, keeping the alpha :
+     * what SRC_ATOP and SRC_IN do with an opaque tint.
+     */
+    public ColorAdjustments fill(int color) {
+        return append(OP_FILL, 0, color);
+    }
+
+    public int size() {
+        return mOps.length;
+    }
+
+    /**
+     * Returns the composed matrix : 20 floats, 4 rows of
+     * [R, G, B, A, offset], offsets in 0 ... 255 units.
+     */
+    public float[] toMatrix() {
+        final float[] result = identity();
+        final float[] step = new float[20];
+        final float[] tmp = new float[20];
+        final float[] hue = new float[9];
+
+        for(int i = 0; i < mOps.length; i++) {
+            final float v = mValues[i];
+            final int c = mColors[i];
+            System.arraycopy(identity(), 0, step, 0, 20);
+
+            switch(mOps[i]) {
+                case OP_SATURATION: {
+                    final float inv = 1 - v;
+                    for(int row = 0; row < 3; row++) {
+                        step[row * 5]     = LUM_R * inv;
+                        step[row * 5 + 1] = LUM_G * inv;
+                        step[row * 5 + 2] = LUM_B * inv;
+                        step[row * 5 + row] += v;
+                    }
+                    break;
+                }
+                case OP_BRIGHTNESS:
+                    step[4] = step[9] = step[14] = v * 255;
+                    break;
+                case OP_CONTRAST:
+                    step[0] = step[6] = step[12] = v;
+                    step[4] = step[9] = step[14] = 127.5f * (1 - v);
+                    break;
+                case OP_HUE:
+                    HueRotation.getMatrix(v, hue);
+                    for(int row = 0; row < 3; row++) {
+                        step[row * 5]     = hue[row * 3];
+                        step[row * 5 + 1] = hue[row * 3 + 1];
+                        step[row * 5 + 2] = hue[row * 3 + 2];
+                    }
+                    break;
+                case OP_MULTIPLY:
+                    step[0]  = ColorMath.red(c) / 255f;
+                    step[6]  = ColorMath.green(c) / 255f;
+                    step[12] = ColorMath.blue(c) / 255f;
+                    step[18] = ColorMath.alpha(c) / 255f;
+                    break;
+                default:    // OP_FILL
+                    step[0] = step[6] = step[12] = 0;
+                    step[4]  = ColorMath.red(c);
+                    step[9]  = ColorMath.green(c);
+                    step[14] = ColorMath.blue(c);
+                    break;
+            }
+
+            concat(step, result, tmp);
+            System.arraycopy(tmp, 0, result, 0, 20);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof ColorAdjustments)) {
+            return false;
+        }
+        final ColorAdjustments a = (ColorAdjustments)o;
+        return mHash == a.mHash && Arrays.equals(mOps, a.mOps)
+                && Arrays.equals(mValues, a.mValues) && Arrays.equals(mColors, a.mColors);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    private ColorAdjustments append(int op, float value, int color) {
+        final int n = mOps.length;
+        final int[] ops = new int[n + 1];
+        final float[] values = new float[n + 1];
+        final int[] colors = new int[n + 1];
+        System.arraycopy(mOps, 0, ops, 0, n);
+        System.arraycopy(mValues, 0, values, 0, n);
+        System.arraycopy(mColors, 0, colors, 0, n);
+        ops[n] = op;
+        values[n] = value;
+        colors[n] = color;
+        return new ColorAdjustments(ops, values, colors);
+    }
+
+    private static float[] identity() {
+        return new float[] {
+            1, 0, 0, 0, 0,
+            0, 1, 0, 0, 0,
+            0, 0, 1, 0, 0,
+            0, 0, 0, 1, 0
+        };
+    }
+
+    /**
+     * out = second * first, both 4x5 affine (an implicit [0 0 0 0 1] fifth row) :
+     * applying out is applying first, then second.
+     */
+    private static void concat(float[] second, float[] first, float[] out) {
+        for(int row = 0; row < 4; row++) {
+            for(int col = 0; col < 5; col++) {
+                float sum = (col == 4) ? second[row * 5 + 4] : 0;
+                for(int k = 0; k < 4; k++) {
+                    sum += second[row * 5 + k] * first[k * 5 + col];
+                }
+                out[row * 5 + col] = sum;
+            }
+        }
+    }
+}
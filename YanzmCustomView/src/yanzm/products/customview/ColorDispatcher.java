@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import yanzm.products.customview.ColorPickerView.OnColorChangingListener;
+
+/**
+ * Latest-wins delivery of colors to an OnColorChangingListener on an Executor.
+ *
+ * At most one delivery task is queued or running at a time. Colors posted
+ * meanwhile only overwrite the latest value; when the task finishes it runs
+ * again if the latest color differs from the one it delivered. A slow listener
+ * therefore skips intermediate colors instead of building a backlog.
+ */
+final class ColorDispatcher implements Runnable {
+
+    private final OnColorChangingListener mListener;
+    private final Executor mExecutor;
+
+    private final AtomicInteger mLatest = new AtomicInteger();
+    private final AtomicBoolean mInFlight = new AtomicBoolean();
+
+    ColorDispatcher(OnColorChangingListener listener, Executor executor) {
+        mListener = listener;
+        mExecutor = executor;
+    }
+
+    OnColorChangingListener getListener() {
+        return mListener;
+    }
+
+    /**
+     * Publishes color. Never blocks; called from the UI thread.
+     */
+    void post(int color) {
+        mLatest.set(color);
+        if(mInFlight.compareAndSet(false, true)) {
+            mExecutor.execute(this);
+        }
+    }
+
+    public void run() {
+        while(true) {
+            final int color = mLatest.get();
+            try {
+                mListener.colorChanging(color);
+            }
+            finally {
+                mInFlight.set(false);
+            }
+            // a color posted while we were busy found mInFlight set : take it over
+            if(mLatest.get() == color || !mInFlight.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
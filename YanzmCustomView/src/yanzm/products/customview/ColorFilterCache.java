@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+
+/**
+ * Process wide cache of PorterDuffColorFilters keyed by (tint, mode), and of
+ * ColorMatrixColorFilters keyed by their ColorAdjustments.
+ *
+ * A color filter cannot be changed after construction, so views
+ * using the same parameters can share one instance (and one native
+ * filter). The least recently used filters are dropped past the capacity.
+ * Mode names are parsed once per distinct string.
+ */
+public final class ColorFilterCache {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	public static final PorterDuff.Mode DEFAULT_MODE = PorterDuff.Mode.SRC_ATOP;
+
+	private static int sCapacity = DEFAULT_CAPACITY;
+
+	private static final LinkedHashMap<Long, PorterDuffColorFilter> sFilters =
+			new LinkedHashMap<Long, PorterDuffColorFilter>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, PorterDuffColorFilter> eldest) {
+			return size() > sCapacity;
+		}
+	};
+
+	private static final LinkedHashMap<ColorAdjustments, ColorMatrixColorFilter> sMatrixFilters =
+			new LinkedHashMap<ColorAdjustments, ColorMatrixColorFilter>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ColorAdjustments, ColorMatrixColorFilter> eldest) {
+			return size() > sCapacity;
+		}
+	};
+
+	private static final HashMap<String, PorterDuff.Mode> sModes = new HashMap<String, PorterDuff.Mode>();
+
+	private static int sHits;
+	private static int sMisses;
+
+	private ColorFilterCache() {
+	}
+
+	/**
+	 * Returns the shared filter for tint and mode, creating it on a miss.
+	 */
+	public static synchronized PorterDuffColorFilter get(int tint, PorterDuff.Mode mode) {
+		final Long key = Long.valueOf(key(tint, mode));
+		PorterDuffColorFilter filter = sFilters.get(key);
+		if (filter != null) {
+			sHits++;
+			return filter;
+		}
+		sMisses++;
+		filter = new PorterDuffColorFilter(tint, mode);
+		sFilters.put(key, filter);
+		return filter;
+	}
+
+	/**
+	 * Returns the shared matrix filter of a chain of adjustments. Chains with
+	 * the same steps and parameters get the same instance.
+	 */
+	public static synchronized ColorMatrixColorFilter get(ColorAdjustments adjustments) {
+		ColorMatrixColorFilter filter = sMatrixFilters.get(adjustments);
+		if (filter != null) {
+			sHits++;
+			return filter;
+		}
+		sMisses++;
+		filter = new ColorMatrixColorFilter(adjustments.toMatrix());
+		sMatrixFilters.put(adjustments, filter);
+		return filter;
+	}
+
+	/**
+	 * Same as {@link #get(ColorAdjustments)} with a tint folded in as the
+	 * last step when it can be expressed as a matrix : MULTIPLY, or SRC_ATOP
+	 * and SRC_IN with an opaque tint. Any other tint is dropped, the view
+	 * having room for one filter only : the adjustments take precedence.
+	 */
+	public static ColorMatrixColorFilter get(ColorAdjustments adjustments, int tint, PorterDuff.Mode mode) {
+		return get(fold(adjustments, tint, mode));
+	}
+
+	/**
+	 * true if some tint in mode can be folded into an adjustment matrix.
+	 */
+	static boolean canFold(PorterDuff.Mode mode) {
+		return mode == PorterDuff.Mode.MULTIPLY || mode == PorterDuff.Mode.SRC_ATOP
+				|| mode == PorterDuff.Mode.SRC_IN;
+	}
+
+	static ColorAdjustments fold(ColorAdjustments adjustments, int tint, PorterDuff.Mode mode) {
+		if (tint != 0) {
+			if (mode == PorterDuff.Mode.MULTIPLY) {
+				return adjustments.multiply(tint);
+			} else if (canFold(mode) && (tint >>> 24) == 0xFF) {
+				return adjustments.fill(tint);
+			}
+		}
+		return adjustments;
+	}
+
+	/**
+	 * Parses a PorterDuff.Mode name such as "SRC_ATOP". null and unknown
+	 * names give {@link #DEFAULT_MODE}. Results are memoized per string.
+	 */
+	public static synchronized PorterDuff.Mode parseMode(String name) {
+		if (name == null) {
+			return DEFAULT_MODE;
+		}
+		PorterDuff.Mode mode = sModes.get(name);
+		if (mode == null) {
+			try {
+				mode = PorterDuff.Mode.valueOf(name);
+			} catch (IllegalArgumentException e) {
+				mode = DEFAULT_MODE;
+			}
+			sModes.put(name, mode);
+		}
+		return mode;
+	}
+
+	/**
+	 * Changes the number of filters kept. Extra entries are dropped on the
+	 * next insertion.
+	 */
+	public static synchronized void setCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive : " + capacity);
+		}
+		sCapacity = capacity;
+	}
+
+	public static synchronized int getHitCount() {
+		return sHits;
+	}
+
+	public static synchronized int getMissCount() {
+		return sMisses;
+	}
+
+	/**
+	 * Number of filters held, PorterDuff and matrix ones together.
+	 */
+	public static synchronized int size() {
+		return sFilters.size() + sMatrixFilters.size();
+	}
+
+	/**
+	 * Drops every filter and resets the statistics. Views keep the filters
+	 * they already hold.
+	 */
+	public static synchronized void clear() {
+		sFilters.clear();
+		sMatrixFilters.clear();
+		sHits = 0;
+		sMisses = 0;
+	}
+
+	static long key(int tint, PorterDuff.Mode mode) {
+		return ((long) mode.ordinal() << 32) | (tint & 0xFFFFFFFFL);
+	}
+}
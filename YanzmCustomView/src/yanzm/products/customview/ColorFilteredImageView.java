@@ -19,13 +19,37 @@
 package yanzm.products.customview;
 
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
 import android.graphics.PorterDuff;
-import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.widget.ImageView;
 
 public class ColorFilteredImageView extends ImageView {
+
+	private static final int[] CROP_TO_PADDING = { android.R.attr.cropToPadding };
+
+	private int mTint;
+	private PorterDuff.Mode mMode = ColorFilterCache.DEFAULT_MODE;
+	private boolean mPrebake;
+	private String mTintToken;
+	private TintStateTable mTintTable;
+	private int mStateIndex;
+	private boolean mTintAnimating;
+	private int mTintTarget;
+	private ColorAdjustments mAdjustments;
+	private boolean mCropToPadding;
+	private boolean mPrebakeUnfit;
+	/** 0xFF - the alpha given to setAlpha : ImageView's constructor may set it before our initializers run */
+	private int mTransparency;
+	private final Paint mBakePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
 	public ColorFilteredImageView(Context context, AttributeSet attrs,
 			int defStyle) {
 		super(context, attrs, defStyle);
@@ -33,21 +57,26 @@ public class ColorFilteredImageView extends ImageView {
 		TypedArray a = context.obtainStyledAttributes(attrs,
 				R.styleable.ColorFilteredImageView, defStyle, 0);
 
-		int tint = a.getInt(R.styleable.ColorFilteredImageView_tint, 0);
+		ColorStateList tints = a.getColorStateList(R.styleable.ColorFilteredImageView_tint);
 		String poterduffMode = a.getString(
 				R.styleable.ColorFilteredImageView_porterduff_mode);
+		mPrebake = a.getBoolean(R.styleable.ColorFilteredImageView_prebake, false);
+		String tintToken = a.getString(R.styleable.ColorFilteredImageView_tint_token);
 
-		if (tint != 0) {
-			PorterDuff.Mode mode = PorterDuff.Mode.SRC_ATOP;
-
-			if(poterduffMode != null) {
-				mode = (PorterDuff.Mode.valueOf(poterduffMode) != null) ? PorterDuff.Mode
-					.valueOf(poterduffMode) : PorterDuff.Mode.SRC_ATOP;
-			}
-
-			setColorFilter(new PorterDuffColorFilter(tint, mode));
+		mMode = ColorFilterCache.parseMode(poterduffMode);
+		if (tintToken != null) {
+			setTintToken(tintToken);
+		} else if (tints != null && tints.isStateful()) {
+			setTintList(tints, mMode);
+		} else if (tints != null && tints.getDefaultColor() != 0) {
+			setTint(tints.getDefaultColor(), mMode);
 		}
 		a.recycle();
+
+		// ImageView has no getter for this before API 16
+		a = context.obtainStyledAttributes(attrs, CROP_TO_PADDING, defStyle, 0);
+		mCropToPadding = a.getBoolean(0, false);
+		a.recycle();
 	}
 
 	public ColorFilteredImageView(Context context, AttributeSet attrs) {
@@ -57,4 +86,357 @@ public class ColorFilteredImageView extends ImageView {
 	public ColorFilteredImageView(Context context) {
 		super(context);
 	}
+
+	/**
+	 * Applies a shared filter from {@link ColorFilterCache}. A tint of 0
+	 * clears the filter.
+	 */
+	public void setTint(int tint, PorterDuff.Mode mode) {
+		stopTintAnimation();
+		if (mTintToken != null) {
+			TintRegistry.unregister(this);
+			mTintToken = null;
+		}
+		mTintTable = null;
+		mTint = tint;
+		mMode = mode;
+		updateTint();
+	}
+
+	/**
+	 * Tints with the color of tints matching the current drawable state.
+	 * The filters of every state are resolved here, so state changes only
+	 * switch between shared filter instances.
+	 *
+	 * @see TintStateTable
+	 */
+	public void setTintList(ColorStateList tints, PorterDuff.Mode mode) {
+		stopTintAnimation();
+		if (mTintToken != null) {
+			TintRegistry.unregister(this);
+			mTintToken = null;
+		}
+		mMode = mode;
+		mTintTable = new TintStateTable(tints, mode);
+		mStateIndex = mTintTable.indexOf(getDrawableState());
+		mTint = mTintTable.colorAt(mStateIndex);
+		updateTint();
+	}
+
+	@Override
+	protected void drawableStateChanged() {
+		super.drawableStateChanged();
+		if (mTintTable != null) {
+			final int index = mTintTable.indexOf(getDrawableState());
+			if (index != mStateIndex) {
+				mStateIndex = index;
+				mTint = mTintTable.colorAt(index);
+				updateTint();
+			}
+		}
+	}
+
+	/**
+	 * Animates the tint from its current color to toColor, keeping the mode.
+	 * All running tint animations share one frame loop and precomputed
+	 * color ramps; see TintAnimator. Ends with the same state as
+	 * {@link #setTint(int, PorterDuff.Mode)}.
+	 */
+	public void animateTint(int toColor, long duration) {
+		if (mAdjustments != null && !ColorFilterCache.canFold(mMode)) {
+			// the tint is not shown while adjustments are set
+			setTint(toColor, mMode);
+			return;
+		}
+
+		int from = mTint;
+		if (from == 0) {
+			if (!hasNeutralTint(mMode)) {
+				// every tint changes the image in this mode : nothing to fade from
+				setTint(toColor, mMode);
+				return;
+			}
+			from = neutralTint(mMode, toColor);
+		}
+
+		if (mTintToken != null) {
+			TintRegistry.unregister(this);
+			mTintToken = null;
+		}
+		mTintTable = null;
+		mTintAnimating = true;
+		mTintTarget = toColor;
+		applyAlpha();
+		TintAnimator.start(this, from, toColor, mMode, mAdjustments, duration);
+	}
+
+	/**
+	 * false for the modes where any tint changes the image : SRC, SRC_IN,
+	 * SRC_OUT, DST_ATOP and CLEAR.
+	 */
+	private static boolean hasNeutralTint(PorterDuff.Mode mode) {
+		switch (mode) {
+		case SRC:
+		case SRC_IN:
+		case SRC_OUT:
+		case DST_ATOP:
+		case CLEAR:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * A tint close to color that leaves the image unchanged in mode.
+	 */
+	private static int neutralTint(PorterDuff.Mode mode, int color) {
+		switch (mode) {
+		case MULTIPLY:
+			return 0xFFFFFFFF;
+		case DST:
+		case DST_IN:
+			return color | 0xFF000000;
+		default:
+			// *_OVER, DST_OUT, SRC_ATOP, XOR, DARKEN, LIGHTEN, SCREEN
+			return color & 0x00FFFFFF;
+		}
+	}
+
+	public void cancelTintAnimation() {
+		if (TintAnimator.cancel(this)) {
+			mTintAnimating = false;
+			updateTint();
+		}
+	}
+
+	private void stopTintAnimation() {
+		if (mTintAnimating) {
+			TintAnimator.cancel(this);
+			mTintAnimating = false;
+		}
+	}
+
+	void onTintAnimationFrame(int tint, ColorFilter filter) {
+		// always the ramp's filter : prebaking every frame would defeat the cache
+		mTint = tint;
+		setColorFilter(filter);
+	}
+
+	void onTintAnimationEnd(int tint) {
+		mTintAnimating = false;
+		mTint = tint;
+		updateTint();
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		if (mTintAnimating) {
+			// jump to the end : a recycled list item must not keep a half-way color
+			TintAnimator.cancel(this);
+			onTintAnimationEnd(mTintTarget);
+		}
+	}
+
+	/**
+	 * Follows the named tint of {@link TintRegistry} instead of a literal
+	 * color, keeping the current mode. null stops following it.
+	 */
+	public void setTintToken(String token) {
+		stopTintAnimation();
+		mTintToken = token;
+		mTintTable = null;
+		if (token == null) {
+			TintRegistry.unregister(this);
+			return;
+		}
+		TintRegistry.register(this, token);
+		applyTokenTint(TintRegistry.getTint(token, 0));
+	}
+
+	public String getTintToken() {
+		return mTintToken;
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mTintToken != null) {
+			// the token may have changed while we were in no window
+			applyTokenTint(TintRegistry.getTint(mTintToken, mTint));
+		}
+	}
+
+	void applyTokenTint(int tint) {
+		if (mTint != tint) {
+			mTint = tint;
+			updateTint();
+		}
+	}
+
+	/**
+	 * Draws the tinted image from a bitmap rendered once into
+	 * {@link TintedBitmapCache} instead of filtering it on every frame.
+	 * Worth it for small icons repeated in scrolling lists; animated or
+	 * frequently changing drawables should keep the filter.
+	 */
+	public void setPrebake(boolean prebake) {
+		if (mPrebake != prebake) {
+			mPrebake = prebake;
+			mPrebakeUnfit = false;
+			updateTint();
+		}
+	}
+
+	@Override
+	public void setImageDrawable(Drawable drawable) {
+		super.setImageDrawable(drawable);
+		resetPrebake();
+	}
+
+	@Override
+	public void setImageResource(int resId) {
+		super.setImageResource(resId);
+		resetPrebake();
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		resetPrebake();
+	}
+
+	private void resetPrebake() {
+		if (mPrebakeUnfit) {
+			mPrebakeUnfit = false;
+			updateTint();
+		}
+	}
+
+	/**
+	 * While prebaking the alpha is applied when drawing the bake, so that
+	 * the shared bake stays opaque.
+	 */
+	@Override
+	public void setAlpha(int alpha) {
+		mTransparency = 0xFF - (alpha & 0xFF);
+		applyAlpha();
+		invalidate();
+	}
+
+	private void applyAlpha() {
+		super.setAlpha(drawsBake() ? 0xFF : 0xFF - mTransparency);
+	}
+
+	public boolean isPrebake() {
+		return mPrebake;
+	}
+
+	/**
+	 * Applies saturation, brightness, contrast and hue adjustments, folded
+	 * into one shared ColorMatrixColorFilter. The tint is folded into the
+	 * same matrix for MULTIPLY, and for SRC_ATOP / SRC_IN with an opaque
+	 * tint; other tints are ignored while adjustments are set, and so is
+	 * prebake. null removes the adjustments.
+	 *
+	 * @see ColorFilterCache#get(ColorAdjustments, int, PorterDuff.Mode)
+	 */
+	public void setColorAdjustments(ColorAdjustments adjustments) {
+		mAdjustments = adjustments;
+		if (mTintAnimating) {
+			// the running ramp was folded with the previous adjustments
+			TintAnimator.cancel(this);
+			onTintAnimationEnd(mTintTarget);
+		} else {
+			updateTint();
+		}
+	}
+
+	public ColorAdjustments getColorAdjustments() {
+		return mAdjustments;
+	}
+
+	private boolean isPrebaking() {
+		return mPrebake && !mPrebakeUnfit && mAdjustments == null && !mTintAnimating;
+	}
+
+	private boolean drawsBake() {
+		return isPrebaking() && mTint != 0;
+	}
+
+	private void updateTint() {
+		if (mAdjustments != null) {
+			setColorFilter(ColorFilterCache.get(mAdjustments, mTint, mMode));
+		} else if (mTint == 0 || (mPrebake && !mPrebakeUnfit)) {
+			setColorFilter(null);
+		} else {
+			setColorFilter((mTintTable != null) ? mTintTable.filterAt(mStateIndex)
+					: ColorFilterCache.get(mTint, mMode));
+		}
+		applyAlpha();
+		invalidate();
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		final Drawable d = getDrawable();
+		if (!drawsBake() || d == null) {
+			super.onDraw(canvas);
+			return;
+		}
+
+		final Rect bounds = d.getBounds();
+		final int w = bounds.width();
+		final int h = bounds.height();
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+
+		final Bitmap tinted = TintedBitmapCache.get(d, mTint, mMode, w, h);
+		if (tinted == null) {
+			// not cacheable, draw through the color filter from now on
+			mPrebakeUnfit = true;
+			updateTint();
+			super.onDraw(canvas);
+			return;
+		}
+
+		final int saveCount = canvas.save();
+		if (mCropToPadding) {
+			final int scrollX = getScrollX();
+			final int scrollY = getScrollY();
+			canvas.clipRect(scrollX + getPaddingLeft(), scrollY + getPaddingTop(),
+					scrollX + getWidth() - getPaddingRight(),
+					scrollY + getHeight() - getPaddingBottom());
+		}
+		canvas.translate(getPaddingLeft(), getPaddingTop());
+		if (hasDrawMatrix(d)) {
+			canvas.concat(getImageMatrix());
+		}
+		// scaled by the image matrix : filter like BitmapDrawable does
+		mBakePaint.setAlpha(0xFF - mTransparency);
+		canvas.drawBitmap(tinted, bounds.left, bounds.top, mBakePaint);
+		canvas.restoreToCount(saveCount);
+	}
+
+	/**
+	 * Mirrors ImageView#configureBounds: the image matrix is only applied
+	 * when ImageView itself would apply it. Assumes the drawable's intrinsic
+	 * size has not changed since it was set.
+	 */
+	private boolean hasDrawMatrix(Drawable d) {
+		final int dwidth = d.getIntrinsicWidth();
+		final int dheight = d.getIntrinsicHeight();
+		final ScaleType scaleType = getScaleType();
+		if (dwidth <= 0 || dheight <= 0 || scaleType == ScaleType.FIT_XY) {
+			return false;
+		}
+		if (scaleType == ScaleType.MATRIX) {
+			return true;
+		}
+		final int vwidth = getWidth() - getPaddingLeft() - getPaddingRight();
+		final int vheight = getHeight() - getPaddingTop() - getPaddingBottom();
+		return vwidth != dwidth || vheight != dheight;
+	}
 }
\ No newline at end of file
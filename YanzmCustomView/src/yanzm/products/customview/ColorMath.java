@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * HSV / RGB conversions on int-packed ARGB colors, matching
+ * android.graphics.Color#HSVToColor and Color#colorToHSV. Several results
+ * are written into arrays supplied by the caller.
+ */
+public final class ColorMath {
+
+    private ColorMath() {
+    }
+
+    public static int alpha(int color) {
+        return color >>> 24;
+    }
+
+    public static int red(int color) {
+        return (color >> 16) & 0xFF;
+    }
+
+    public static int green(int color) {
+        return (color >> 8) & 0xFF;
+    }
+
+    public static int blue(int color) {
+        return color & 0xFF;
+    }
+
+    public static int argb(int alpha, int red, int green, int blue) {
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Converts HSV components to an opaque color.
+     *
+     * @param hue [0 ... 360)
+     * @param saturation [0 ... 1]
+     * @param value [0 ... 1]
+     */
+    public static int hsvToColor(float hue, float saturation, float value) {
+        return hsvToColor(0xFF, hue, saturation, value);
+    }
+
+    /**
+     * Converts HSV components to a color with the given alpha.
+     * Out of range components are pinned the same way Color#HSVToColor does.
+     */
+    public static int hsvToColor(int alpha, float hue, float saturation, float value) {
+        final float s = pin(saturation);
+        final float v = pin(value);
+        final int vb = round255(v);
+
+        if(s == 0) {
+            return argb(alpha, vb, vb, vb);
+        }
+
+        final float hx = (hue < 0 || hue >= 360) ? 0 : hue / 60;
+        final int w = (int)hx;
+        final float f = hx - w;
+
+        final int p = round255((1 - s) * v);
+        final int q = round255((1 - s * f) * v);
+        final int t = round255((1 - s * (1 - f)) * v);
+
+        switch(w) {
+            case 0:  return argb(alpha, vb, t, p);
+            case 1:  return argb(alpha, q, vb, p);
+            case 2:  return argb(alpha, p, vb, t);
+            case 3:  return argb(alpha, p, q, vb);
+            case 4:  return argb(alpha, t, p, vb);
+            default: return argb(alpha, vb, p, q);
+        }
+    }
+
+    /**
+     * Converts a color to HSV.
+     *
+     * @param hsv receives hue [0 ... 360), saturation and value [0 ... 1]
+     */
+    public static void colorToHSV(int color, float[] hsv) {
+        colorToHSV(color, hsv, 0);
+    }
+
+    /**
+     * Converts a color to HSV, writing the three components at hsv[offset].
+     */
+    public static void colorToHSV(int color, float[] hsv, int offset) {
+        final int r = red(color);
+        final int g = green(color);
+        final int b = blue(color);
+
+        final int max = java.lang.Math.max(r, java.lang.Math.max(g, b));
+        final int min = java.lang.Math.min(r, java.lang.Math.min(g, b));
+        final int delta = max - min;
+
+        hsv[offset + 2] = max / 255f;
+        if(max == 0) {
+            hsv[offset] = 0;
+            hsv[offset + 1] = 0;
+            return;
+        }
+        hsv[offset + 1] = (float)delta / max;
+        hsv[offset] = hue(r, g, b, max, delta);
+    }
+
+    /**
+     * Returns the hue of a color [0 ... 360) without going through a float[].
+     */
+    public static float hue(int color) {
+        final int r = red(color);
+        final int g = green(color);
+        final int b = blue(color);
+
+        final int max = java.lang.Math.max(r, java.lang.Math.max(g, b));
+        final int min = java.lang.Math.min(r, java.lang.Math.min(g, b));
+        return hue(r, g, b, max, max - min);
+    }
+
+    /**
+     * Fills out[offset ... offset + count) with one row of colors of the same
+     * hue and value, the saturation starting at saturation0 and growing by
+     * saturationStep for every pixel.
+     */
+    public static void hsvRowToColors(float hue, float saturation0, float saturationStep,
+            float value, int[] out, int offset, int count) {
+        final float v = pin(value);
+        final int vb = round255(v);
+
+        final float hx = (hue < 0 || hue >= 360) ? 0 : hue / 60;
+        final int w = (int)hx;
+        final float f = hx - w;
+
+        float saturation = saturation0;
+        for(int i = offset, end = offset + count; i < end; i++, saturation += saturationStep) {
+            final float s = pin(saturation);
+            if(s == 0) {
+                out[i] = argb(0xFF, vb, vb, vb);
+                continue;
+            }
+
+            final int p = round255((1 - s) * v);
+            final int q = round255((1 - s * f) * v);
+            final int t = round255((1 - s * (1 - f)) * v);
+
+            switch(w) {
+                case 0:  out[i] = argb(0xFF, vb, t, p); break;
+                case 1:  out[i] = argb(0xFF, q, vb, p); break;
+                case 2:  out[i] = argb(0xFF, p, vb, t); break;
+                case 3:  out[i] = argb(0xFF, p, q, vb); break;
+                case 4:  out[i] = argb(0xFF, t, p, vb); break;
+                default: out[i] = argb(0xFF, vb, p, q); break;
+            }
+        }
+    }
+
+    /**
+     * Converts colors[offset ... offset + count) to HSV. Components are
+     * stored interleaved, three floats per color, starting at hsv[hsvOffset].
+     */
+    public static void colorsToHSV(int[] colors, int offset, int count, float[] hsv, int hsvOffset) {
+        for(int i = 0; i < count; i++) {
+            colorToHSV(colors[offset + i], hsv, hsvOffset + i * 3);
+        }
+    }
+
+    private static float hue(int r, int g, int b, int max, int delta) {
+        if(delta == 0) {
+            return 0;
+        }
+
+        float h;
+        if(r == max) {
+            h = (float)(g - b) / delta;
+        }
+        else if(g == max) {
+            h = 2 + (float)(b - r) / delta;
+        }
+        else {
+            h = 4 + (float)(r - g) / delta;
+        }
+
+        h *= 60;
+        if(h < 0) {
+            h += 360;
+        }
+        return h;
+    }
+
+    private static float pin(float x) {
+        if(x < 0) {
+            return 0;
+        }
+        if(x > 1) {
+            return 1;
+        }
+        return x;
+    }
+
+    private static int round255(float x) {
+        return (int)(x * 255 + 0.5f);
+    }
+}
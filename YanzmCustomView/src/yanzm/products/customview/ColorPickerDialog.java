@@ -18,17 +18,43 @@
 
 package yanzm.products.customview;
 
+import java.util.concurrent.Executor;
+
 import yanzm.products.customview.ColorPickerView.OnColorChangedListener;
 import android.app.Dialog;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
+import android.widget.LinearLayout;
 
 public class ColorPickerDialog extends Dialog {
 
+    /**
+     * Reports how long it took from {@link ColorPickerDialog#show()} until the
+     * picker finished drawing its first frame.
+     */
+    public interface OnFirstFrameListener {
+        void onFirstFrame(long elapsedMillis);
+    }
+
+    /**
+     * One picker shared by every dialog (UI thread only). It is built with the
+     * application context, keeps its bitmaps while detached and is moved from
+     * dialog to dialog, so only the first open pays for construction.
+     */
+    private static ColorPickerView sPicker;
+
     private OnColorChangedListener mListener;
     private int mInitialColor;
+    private int[] mSnapPalette;
+
+    private LinearLayout mLayout;
+    private ColorPickerView mPicker;
+
+    private OnFirstFrameListener mFirstFrameListener;
+    private long mShowTime;
     
     public ColorPickerDialog(Context context, OnColorChangedListener listener, int initialColor) {
     	super(context);
@@ -36,23 +62,136 @@ public class ColorPickerDialog extends Dialog {
     	mInitialColor = initialColor;
     }
 
+    /**
+     * Builds the shared picker and lays it out at its default size ahead of
+     * time, so that opening a dialog with initialColor draws from warm caches.
+     * Call it on the UI thread, e.g. when the screen that offers the dialog is
+     * created.
+     *
+     * @param executor rasterizes the saturation/value plane off the UI thread;
+     *                 null renders it right away
+     */
+    public static void prewarm(Context context, int initialColor, Executor executor) {
+        final ColorPickerView picker = obtainPicker(context);
+        picker.setColor(initialColor);
+
+        final float density = context.getResources().getDisplayMetrics().density;
+        picker.prewarm((int)(ColorPickerView.DEFAULT_WIDTH_DIP * density + 0.5f),
+                (int)(ColorPickerView.DEFAULT_HEIGHT_DIP * density + 0.5f), executor);
+        sPicker = picker;
+    }
+
+    public static void prewarm(Context context, int initialColor) {
+        prewarm(context, initialColor, null);
+    }
+
+    /**
+     * Drops the shared picker and its bitmaps, e.g. from onLowMemory().
+     */
+    public static void releasePrewarmed() {
+        if(sPicker != null) {
+            sPicker.releaseCaches();
+            sPicker = null;
+        }
+    }
+
+    private static ColorPickerView obtainPicker(Context context) {
+        ColorPickerView picker = sPicker;
+        sPicker = null;
+        if(picker == null) {
+            picker = new ColorPickerView(context.getApplicationContext());
+            picker.setRetainCaches(true);
+        }
+        return picker;
+    }
+
+    /**
+     * Restricts the picked color to the nearest entry of the palette.
+     * Must be called before the dialog is shown.
+     *
+     * @see ColorPickerView#setSnapPalette(int[])
+     */
+    public void setSnapPalette(int[] palette) {
+        mSnapPalette = palette;
+    }
+
+    public void setOnFirstFrameListener(OnFirstFrameListener l) {
+        mFirstFrameListener = l;
+    }
+
+    @Override
+    public void show() {
+        mShowTime = SystemClock.uptimeMillis();
+        super.show();
+    }
+
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // loaded once per process, so reopening the dialog does no I/O
+        final RecentColors history = RecentColors.getInstance(getContext());
+
+        ColorSwatchStrip strip = new ColorSwatchStrip(getContext());
+        strip.setColors(history);
+        strip.setOnSwatchClickListener(new ColorSwatchStrip.OnSwatchClickListener() {
+            public void onSwatchClick(int color) {
+                if(mPicker != null) {
+                    mPicker.setColor(color);
+                }
+            }
+        });
+
+        ViewGroup.LayoutParams lp = new ViewGroup.LayoutParams(LayoutParams.FILL_PARENT, LayoutParams.FILL_PARENT);
+
+        mLayout = new LinearLayout(getContext());
+        mLayout.setOrientation(LinearLayout.VERTICAL);
+        // as wide as the picker's default, so the dialog wraps to the size prewarm() laid it out at
+        final float density = getContext().getResources().getDisplayMetrics().density;
+        mLayout.addView(strip, new LinearLayout.LayoutParams(
+                (int)(ColorPickerView.DEFAULT_WIDTH_DIP * density + 0.5f), LayoutParams.WRAP_CONTENT));
+        
+        setContentView(mLayout, lp);
+        setTitle("- Color -");
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        final RecentColors history = RecentColors.getInstance(getContext());
         OnColorChangedListener l = new OnColorChangedListener() {
             public void colorChanged(int color) {
+                history.addRecent(color);
                 mListener.colorChanged(color);
                 dismiss();
             }
         };
 
-        ViewGroup.LayoutParams lp = new ViewGroup.LayoutParams(LayoutParams.FILL_PARENT, LayoutParams.FILL_PARENT);
-        
-        ColorPickerView v = new ColorPickerView(getContext());
-        v.setOnColorChangedListener(l);
-        v.setColor(mInitialColor);
-        
-        setContentView(v, lp);
-        setTitle("- Color -");
+        mPicker = obtainPicker(getContext());
+        mPicker.setOnColorChangedListener(l);
+        mPicker.setSnapPalette(mSnapPalette);
+        mPicker.setColor(mInitialColor);
+        if(mFirstFrameListener != null) {
+            mPicker.setOnFirstDrawListener(new Runnable() {
+                public void run() {
+                    if(mFirstFrameListener != null) {
+                        mFirstFrameListener.onFirstFrame(SystemClock.uptimeMillis() - mShowTime);
+                    }
+                }
+            });
+        }
+        mLayout.addView(mPicker, 0, new LinearLayout.LayoutParams(LayoutParams.FILL_PARENT, 0, 1));
     }
 
-}
\ No newline at end of file
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        // hand the picker back to the pool for the next dialog
+        mLayout.removeView(mPicker);
+        mPicker.setOnColorChangedListener(null);
+        mPicker.setOnFirstDrawListener(null);
+        sPicker = mPicker;
+        mPicker = null;
+    }
+}
@@ -18,16 +18,23 @@
 
 package yanzm.products.customview;
 
+import java.util.concurrent.Executor;
+
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
+import android.graphics.ComposeShader;
 import android.graphics.LinearGradient;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
 import android.graphics.RectF;
 import android.graphics.Shader;
 import android.graphics.SweepGradient;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
@@ -37,21 +44,82 @@ public class ColorPickerView extends View {
     public interface OnColorChangedListener {
         void colorChanged(int color);
     }	
+
+    /**
+     * Called while the user drags, at most once per frame, with the latest
+     * selected color. Intermediate colors may be skipped.
+     */
+    public interface OnColorChangingListener {
+        void colorChanging(int color);
+    }
 	
     private final int[] mColors = new int[] {
             0xFFFF0000, 0xFFFF00FF, 0xFF0000FF, 0xFF00FFFF, 
             0xFF00FF00, 0xFFFFFF00, 0xFFFF0000
         };
-    private int[] mChroma = new int[] {
-    		0xFF000000, 0xFF888888, 0xFFFFFFFF
-    };
-
-    private Paint mPaint, mPaintC;
+    private Paint mPaint;
     private Paint mOKPaint;
     private OnColorChangedListener mListener;
-    private Shader sg, lg;
+    private OnColorChangingListener mChangingListener;
+    private ColorDispatcher mChangingDispatcher;
+    private boolean mColorChanging;
+    private Shader sg;
+    private HueWheel mHueWheel;
+    private int[] mRingColors;
     private int selectColor;
     private float selectHue = 0;
+    private int mHueIndex;
+    private float mSelectSat;
+    private float mSelectVal;
+    private final float[] mHSV = new float[3];
+
+    /** picks in HSV : hue ring, saturation by value plane */
+    public static final int PICKER_MODE_HSV = SVPlaneRasterizer.MODEL_HSV;
+    /** picks in OKLCH : hue ring of constant lightness and chroma, chroma by lightness plane */
+    public static final int PICKER_MODE_OKLCH = SVPlaneRasterizer.MODEL_OKLCH;
+
+    /*
+     * In PICKER_MODE_OKLCH selectHue is the OKLCH hue, mSelectSat the chroma
+     * relative to the largest in-gamut chroma and mSelectVal the lightness.
+     */
+    private static final int OKLCH_RING_STOPS = 73;
+    private static final float OKLCH_RING_LIGHTNESS = 0.75f;
+    private static final float OKLCH_RING_CHROMA = 0.12f;
+
+    private int mPickerMode = PICKER_MODE_HSV;
+
+    /** the ring is drawn from this many stops sampled from the linear light wheel */
+    private static final int LINEAR_RING_STOPS = 97;
+    private boolean mLinearInterpolation;
+
+    /** draws the saturation/value plane from a per-hue cached bitmap */
+    public static final int SV_RENDER_BITMAP = 0;
+    /** draws the saturation/value plane with a composed gradient shader */
+    public static final int SV_RENDER_SHADER = 1;
+
+    /** strokes the hue ring on every frame */
+    public static final int RING_DRAW_DIRECT = 0;
+    /** draws the hue ring from a bitmap rendered once per size */
+    public static final int RING_DRAW_CACHED = 1;
+
+    private int mRingDrawMode = RING_DRAW_CACHED;
+    private Bitmap mRingBitmap;
+    private boolean mRingDirty = true;
+
+    private static final int SV_CACHE_SIZE = 4;
+    private int mSVRenderMode = SV_RENDER_BITMAP;
+    private boolean mSVDirty = true;
+    private SVPlaneCache mSVCache;
+    private Bitmap mSVPlane;
+    private Paint mSVPaint;
+    private Shader mValueShader;
+
+    private int[] mSnapPalette;
+    private PaletteIndex mSnapIndex;
+
+    /** set for a pooled view : the bitmaps survive detaching from a window */
+    private boolean mRetainCaches;
+    private Runnable mOnFirstDraw;
     
     public ColorPickerView(Context context) {
         this(context, null);
@@ -84,82 +152,506 @@ public class ColorPickerView extends View {
     }
     
     public void setColor(int c) {
-    	selectColor = c;
+    	applyColor(c);
     }
     
     public void setOnColorChangedListener(OnColorChangedListener l) {
         mListener = l;    	
     }
+
+    /**
+     * Listens to the color while it is being picked. l is called on the UI
+     * thread, at most once per frame.
+     */
+    public void setOnColorChangingListener(OnColorChangingListener l) {
+        setOnColorChangingListener(l, null);
+    }
+
+    /**
+     * Listens to the color while it is being picked, delivering on executor.
+     * Only the latest color is kept : while a call is queued or running, newer
+     * colors replace each other and just the last one is delivered after it.
+     *
+     * @param executor where l runs, or null for the UI thread
+     */
+    public void setOnColorChangingListener(OnColorChangingListener l, Executor executor) {
+        mChangingListener = l;
+        mChangingDispatcher = (l != null && executor != null) ? new ColorDispatcher(l, executor) : null;
+    }
+
+    /**
+     * Smooths ring and SV drags with an exponential moving average over every
+     * touch sample, including the historical samples batched in a MotionEvent.
+     *
+     * @param smoothing weight kept from the previous position [0 ... 1), 0 disables smoothing
+     */
+    public void setTouchSmoothing(float smoothing) {
+        if(smoothing < 0 || smoothing >= 1) {
+            throw new IllegalArgumentException("smoothing must be in [0, 1) : " + smoothing);
+        }
+        mTouchSmoothing = smoothing;
+    }
+
+    public float getTouchSmoothing() {
+        return mTouchSmoothing;
+    }
+
+    /**
+     * Selects how the hue ring is drawn, so that both ways can be compared.
+     *
+     * @param mode {@link #RING_DRAW_DIRECT} or {@link #RING_DRAW_CACHED}
+     */
+    public void setRingDrawMode(int mode) {
+        if(mode != RING_DRAW_DIRECT && mode != RING_DRAW_CACHED) {
+            throw new IllegalArgumentException("unknown ring draw mode : " + mode);
+        }
+        if(mRingDrawMode != mode) {
+            mRingDrawMode = mode;
+            if(mode == RING_DRAW_DIRECT) {
+                releaseRingBitmap();
+            }
+            mRingDirty = true;
+            invalidate();
+        }
+    }
+
+    public int getRingDrawMode() {
+        return mRingDrawMode;
+    }
+
+    /**
+     * Selects the color model of the ring and the plane. The selected color is kept.
+     *
+     * @param mode {@link #PICKER_MODE_HSV} or {@link #PICKER_MODE_OKLCH}
+     */
+    public void setPickerMode(int mode) {
+        if(mode != PICKER_MODE_HSV && mode != PICKER_MODE_OKLCH) {
+            throw new IllegalArgumentException("unknown picker mode : " + mode);
+        }
+        if(mPickerMode != mode) {
+            mPickerMode = mode;
+            init();
+        }
+    }
+
+    public int getPickerMode() {
+        return mPickerMode;
+    }
+
+    /**
+     * Blends the hue ring between its stops in linear light instead of on the
+     * gamma-encoded channels, which gives cleaner transitions. The blend is
+     * table driven and done once when the ring is built.
+     */
+    public void setLinearInterpolation(boolean linear) {
+        if(mLinearInterpolation != linear) {
+            mLinearInterpolation = linear;
+            init();
+        }
+    }
+
+    public boolean isLinearInterpolation() {
+        return mLinearInterpolation;
+    }
+
+    /**
+     * Snaps the selected color to the perceptually nearest entry of a fixed
+     * palette (e.g. brand colors). The markers follow the finger; only the
+     * color shown in the OK swatch and reported to the listener is snapped.
+     * The palette is indexed once here, so lookups while dragging are cheap.
+     *
+     * @param palette colors to snap to, or null to pick freely
+     */
+    public void setSnapPalette(int[] palette) {
+        if(palette == mSnapPalette) {
+            return;    // already indexed (a pooled view is reconfigured on every show)
+        }
+        mSnapPalette = palette;
+        mSnapIndex = (palette != null && palette.length > 0) ? new PaletteIndex(palette) : null;
+        applyColor(selectColor);
+    }
+
+    /**
+     * Selects how the saturation/value plane is drawn. The OKLCH plane is not
+     * an affine blend, so {@link #PICKER_MODE_OKLCH} always uses the bitmap.
+     *
+     * @param mode {@link #SV_RENDER_BITMAP} or {@link #SV_RENDER_SHADER}
+     */
+    public void setSVRenderMode(int mode) {
+        if(mode != SV_RENDER_BITMAP && mode != SV_RENDER_SHADER) {
+            throw new IllegalArgumentException("unknown render mode : " + mode);
+        }
+        if(mSVRenderMode != mode) {
+            mSVRenderMode = mode;
+            mSVDirty = true;
+            invalidate();
+        }
+    }
+
+    public int getSVRenderMode() {
+        return mSVRenderMode;
+    }
     
     
     public void init() {
-        selectHue = getHue(selectColor);
-        
-        sg = new SweepGradient(0, 0, mColors, null);
-        lg = new LinearGradient(OK_X0, 0, OK_X1, 0, mChroma, null, Shader.TileMode.CLAMP);
+        mRingColors = (mPickerMode == PICKER_MODE_OKLCH) ? oklchRingColors() : mColors;
+        mHueWheel = new HueWheel(mRingColors, HueWheel.DEFAULT_SIZE, mLinearInterpolation);
+        if(mLinearInterpolation) {
+            // SweepGradient blends in sRGB, so feed it dense stops taken from the wheel
+            final int[] stops = new int[LINEAR_RING_STOPS];
+            for(int i = 0; i < LINEAR_RING_STOPS - 1; i++) {
+                stops[i] = mHueWheel.colorAt(i * mHueWheel.size() / (LINEAR_RING_STOPS - 1));
+            }
+            stops[LINEAR_RING_STOPS - 1] = stops[0];
+            sg = new SweepGradient(0, 0, stops, null);
+        }
+        else {
+            sg = new SweepGradient(0, 0, mRingColors, null);
+        }
 
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mPaint.setStyle(Paint.Style.STROKE);
         mPaint.setShader(sg);
-        mPaint.setStrokeWidth(CENTER_RADIUS);
+        mRingDirty = true;
+
+        mSVPaint = new Paint();
+        mSVPaint.setStyle(Paint.Style.FILL);
+        mSVDirty = true;
 
-        mPaintC = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mPaintC.setStyle(Paint.Style.FILL);
-        mPaintC.setShader(lg);
-        mPaintC.setStrokeWidth(2);
-        
         mOKPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mOKPaint.setStyle(Paint.Style.FILL);
         mOKPaint.setColor(selectColor);
-        mOKPaint.setStrokeWidth(5);
+
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+
+        mMarkerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mMarkerPaint.setStyle(Paint.Style.STROKE);
+
+        if(getWidth() > 0) {
+            updateGeometry(getWidth(), getHeight());
+        }
+        applyColor(selectColor);
+    }
+
+    /**
+     * OKLCH ring stops, laid out like mColors : clockwise from 3 o'clock
+     * with the hue decreasing from 360 to 0.
+     */
+    private static int[] oklchRingColors() {
+        final int[] colors = new int[OKLCH_RING_STOPS];
+        for(int i = 0; i < OKLCH_RING_STOPS; i++) {
+            colors[i] = OkLab.oklchToColor(OKLCH_RING_LIGHTNESS, OKLCH_RING_CHROMA,
+                    ringHue((float)i / (OKLCH_RING_STOPS - 1)));
+        }
+        return colors;
+    }
+
+    private static float ringHue(float unit) {
+        float hue = 360 * (1 - unit);
+        return (hue >= 360) ? hue - 360 : hue;
+    }
+
+    /**
+     * Moves the whole selection (ring marker, SV marker and OK swatch) to the given color.
+     */
+    private void applyColor(int c) {
+        selectColor = (mSnapIndex != null) ? mSnapIndex.nearest(c) : c;
+        mOKPaint.setColor(selectColor);
+
+        if(mPickerMode == PICKER_MODE_OKLCH) {
+            OkLab.colorToOklch(c, mHSV);
+            final float maxChroma = OkLab.maxChroma(mHSV[0], mHSV[2]);
+            setSelectHue(mHSV[2]);
+            mHueIndex = java.lang.Math.round((1 - mHSV[2] / 360) * mHueWheel.size()) % mHueWheel.size();
+            mSelectSat = (maxChroma > 0) ? java.lang.Math.min(1, mHSV[1] / maxChroma) : 0;
+            mSelectVal = mHSV[0];
+        }
+        else {
+            ColorMath.colorToHSV(c, mHSV);
+            setSelectHue(mHSV[0]);
+            mHueIndex = mHueWheel.indexOfHue(mHSV[0]);
+            mSelectSat = mHSV[1];
+            mSelectVal = mHSV[2];
+        }
+        updateMarkers();
+        invalidate();
+    }
+
+    /**
+     * Returns the plane color at the given position for the selected hue.
+     */
+    private int planeColor(float saturation, float value) {
+        if(mPickerMode == PICKER_MODE_OKLCH) {
+            return OkLab.oklchToColor(value, saturation * OkLab.maxChroma(value, selectHue), selectHue);
+        }
+        return setHSVColor(selectHue, saturation, value);
     }
     
     private boolean mTrackingOK;
     private boolean mHighlightOK;
     
-    private static final int CENTER_X = 100;
-    private static final int CENTER_Y = 100;
-    private static final int CENTER_RADIUS = 24;
-    private static final float OK_X0 = - CENTER_X/2;
-    private static final float OK_X1 =   CENTER_X/2;
-    private static final float OK_Y0 = (float) (CENTER_X * 1.2);
-    private static final float OK_Y1 = (float) (CENTER_X * 1.5);
+    /*
+     * The layout is designed on a 200 x 280 grid (ring radius 100) and scaled
+     * to the measured size. Everything below is derived once in onSizeChanged();
+     * onDraw() and onTouchEvent() only read it. Rects are relative to the ring
+     * center (mCenterX, mCenterY).
+     */
+    static final float DEFAULT_WIDTH_DIP = 200;
+    static final float DEFAULT_HEIGHT_DIP = 280;
+    private static final float HEIGHT_RATIO = 2.8f;
+
+    private float mCenterX, mCenterY;
+    private float mRadius;
+    private float mRingWidth;
+    private float mOuterRadiusSq, mInnerRadiusSq;
+    private float mCorner;
+    private float mTextBaseline;
+    private float mMarkerRadius;
+    private int mDirtyPadding;
+
+    private Paint mMarkerPaint;
+    private float mRingMarkerX, mRingMarkerY;
+    private float mSVMarkerX, mSVMarkerY;
     
     private void drawSVRegion(Canvas canvas) {
-    	final float RESOLUTION = (float)0.01;
-    	
-    	for(float y = 0; y < 1; y += RESOLUTION) {
-        	mChroma = new int[10];
+        if(mSVCache == null) {
+            return;    // not laid out yet
+        }
+        switch((mPickerMode == PICKER_MODE_HSV) ? mSVRenderMode : SV_RENDER_BITMAP) {
+            case SV_RENDER_SHADER:
+                if(mSVDirty) {
+                    updateSVShader();
+                    mSVDirty = false;
+                }
+                canvas.drawRect(mSVRect, mSVPaint);
+                break;
+            default:
+                if(mSVDirty || mSVPlane == null) {
+                    mSVPlane = mSVCache.get(selectHue);
+                    mSVDirty = false;
+                }
+                canvas.drawBitmap(mSVPlane, mSVRect.left, mSVRect.top, null);
+                break;
+        }
+    }
+
+    /**
+     * The plane is white to pure hue from left to right, darkened by the
+     * value ramp from top to bottom, so two composed gradients draw it exactly.
+     */
+    private void updateSVShader() {
+        Shader saturation = new LinearGradient(mSVRect.left, 0, mSVRect.right, 0,
+                Color.WHITE, setHSVColor(selectHue, 1, 1), Shader.TileMode.CLAMP);
+        mSVPaint.setShader(new ComposeShader(saturation, mValueShader, PorterDuff.Mode.SRC_OVER));
+    }
+
+    private void setHueIndex(int index) {
+        if(index == mHueIndex) {
+            return;
+        }
+        invalidateMarker(mRingMarkerX, mRingMarkerY);
+        mHueIndex = index;
+        updateMarkers();
+        invalidateMarker(mRingMarkerX, mRingMarkerY);
+        invalidateLocal(mSVRect);
 
-        	int i = 0;
-        	for(float x = 0; i < 10; x += 0.1, i+=1) {
-        		mChroma[i] = setHSVColor(selectHue, x, y);
-        	}
-            lg = new LinearGradient(OK_X0, 0, OK_X1, 0, mChroma, null, Shader.TileMode.CLAMP);
-            mPaintC.setShader(lg);
+        if(mPickerMode == PICKER_MODE_OKLCH) {
+            final float hue = ringHue((float)index / mHueWheel.size());
+            setSelectHue(hue);
+            final float maxChroma = OkLab.maxChroma(OKLCH_RING_LIGHTNESS, hue);
+            setSelectSV((maxChroma > 0) ? java.lang.Math.min(1, OKLCH_RING_CHROMA / maxChroma) : 0,
+                    OKLCH_RING_LIGHTNESS, mHueWheel.colorAt(index));
+        }
+        else {
+            setSelectHue(mHueWheel.hueAt(index));
+            // a ring color is the pure hue : full saturation and value
+            setSelectSV(1, 1, mHueWheel.colorAt(index));
+        }
+    }
 
-            //canvas.drawRect(OK_X0, OK_X0 + (CENTER_X * y), OK_X1, OK_X0 + (float)(CENTER_X * (y)), mPaintC);
-        	canvas.drawLine(OK_X0, OK_X0 + (CENTER_X * y), OK_X1, OK_X0 + (float)(CENTER_X * (y)), mPaintC);
+    private void setSelectSV(float saturation, float value, int color) {
+        if(saturation != mSelectSat || value != mSelectVal) {
+            invalidateMarker(mSVMarkerX, mSVMarkerY);
+            mSelectSat = saturation;
+            mSelectVal = value;
+            updateMarkers();
+            invalidateMarker(mSVMarkerX, mSVMarkerY);
+        }
+        if(mSnapIndex != null) {
+            color = mSnapIndex.nearest(color);
+        }
+        if(color != selectColor) {
+            selectColor = color;
+            mOKPaint.setColor(color);
+            invalidateLocal(mOKRect);
+            mColorChanging = true;
         }
     }
-    
+
+    private void updateMarkers() {
+        final double angle = 2 * java.lang.Math.PI * mHueIndex / mHueWheel.size();
+        final float r = mRadius - mRingWidth * 0.5f;
+        mRingMarkerX = (float)(r * java.lang.Math.cos(angle));
+        mRingMarkerY = (float)(r * java.lang.Math.sin(angle));
+
+        mSVMarkerX = mSVRect.left + mSelectSat * mSVRect.width();
+        mSVMarkerY = mSVRect.top + mSelectVal * mSVRect.height();
+    }
+
+    /**
+     * Invalidates a rect given in the translated (ring center origin) coordinates
+     * used by onDraw(), padded for anti-aliasing and stroke widths.
+     */
+    private void invalidateLocal(float left, float top, float right, float bottom) {
+        invalidate((int)(left + mCenterX) - mDirtyPadding, (int)(top + mCenterY) - mDirtyPadding,
+                (int)(right + mCenterX) + mDirtyPadding + 1, (int)(bottom + mCenterY) + mDirtyPadding + 1);
+    }
+
+    private void invalidateLocal(RectF r) {
+        invalidateLocal(r.left, r.top, r.right, r.bottom);
+    }
+
+    private void invalidateMarker(float x, float y) {
+        invalidateLocal(x - mMarkerRadius, y - mMarkerRadius, x + mMarkerRadius, y + mMarkerRadius);
+    }
+
+    private void drawMarker(Canvas canvas, float x, float y) {
+        final float r = mMarkerRadius * 2 / 3;
+        mMarkerPaint.setColor(Color.BLACK);
+        mMarkerPaint.setStrokeWidth(mMarkerRadius / 2);
+        canvas.drawCircle(x, y, r, mMarkerPaint);
+        mMarkerPaint.setColor(Color.WHITE);
+        mMarkerPaint.setStrokeWidth(mMarkerRadius / 4);
+        canvas.drawCircle(x, y, r, mMarkerPaint);
+    }
+
+    private void setSelectHue(float hue) {
+        if(hue != selectHue) {
+            selectHue = hue;
+            mSVDirty = true;    // re-render only when the hue actually changes
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateGeometry(w, h);
+    }
+
+    private void updateGeometry(int w, int h) {
+        final float radius = java.lang.Math.min(w / 2f, h / HEIGHT_RATIO);
+        final float unit = radius / 100;    // one pixel of the 200 x 280 design
+
+        if(radius != mRadius) {
+            mRingDirty = true;    // the ring bitmap only depends on the radius
+        }
+        mRadius = radius;
+        mCenterX = w / 2f;
+        mCenterY = (h - radius * HEIGHT_RATIO) / 2 + radius;
+
+        mRingWidth = 24 * unit;
+        mOuterRadiusSq = radius * radius;
+        mInnerRadiusSq = (radius - mRingWidth) * (radius - mRingWidth);
+        mPaint.setStrokeWidth(mRingWidth);
+
+        float r = radius - mRingWidth * 0.5f;
+        mRingRect.set(-r, -r, r, r);
+
+        final float half = radius / 2;
+        mSVRect.set(-half, -half, half, half);
+        mOKRect.set(-half, 120 * unit, half, 150 * unit);
+
+        float padding = 5 * unit;
+        mHaloRect.set(mOKRect.left - padding, mOKRect.top - padding,
+                mOKRect.right + padding, mOKRect.bottom + padding);
+        mCorner = 5 * unit;
+        mOKPaint.setStrokeWidth(5 * unit);
+
+        mTextPaint.setTextSize(20 * unit);
+        mTextBaseline = (mOKRect.top + mOKRect.bottom - mTextPaint.ascent() - mTextPaint.descent()) / 2;
+
+        mMarkerRadius = 6 * unit;
+        mDirtyPadding = (int)(3 * unit) + 1;
+
+        final int side = java.lang.Math.round(mSVRect.width());
+        if(mSVCache == null || mSVCache.getWidth() != side || mSVCache.getModel() != mPickerMode) {
+            if(mSVCache != null) {
+                mSVCache.clear();
+            }
+            mSVCache = (side > 0) ? new SVPlaneCache(side, side, SV_CACHE_SIZE, mPickerMode) : null;
+            mSVPlane = null;
+        }
+
+        // value ramp : opaque black at the top (value 0), transparent at the bottom (value 1)
+        mValueShader = new LinearGradient(0, mSVRect.top, 0, mSVRect.bottom,
+                Color.BLACK, Color.TRANSPARENT, Shader.TileMode.CLAMP);
+        mSVDirty = true;
+
+        updateMarkers();
+    }
+
+    // onDraw() only reads these; they are sized in onSizeChanged()
+    private final RectF mRingRect = new RectF();
+    private final RectF mSVRect = new RectF();
+    private final RectF mOKRect = new RectF();
+    private final RectF mHaloRect = new RectF();
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private void drawRing(Canvas canvas) {
+        if(mRingDrawMode == RING_DRAW_DIRECT) {
+            canvas.drawOval(mRingRect, mPaint);
+            return;
+        }
+        if(prepareRingBitmap()) {
+            canvas.drawBitmap(mRingBitmap, -mRingBitmap.getWidth() / 2f, -mRingBitmap.getHeight() / 2f, null);
+        }
+    }
+
+    /**
+     * (Re)renders the cached ring if needed. Returns false before the first layout.
+     */
+    private boolean prepareRingBitmap() {
+        final int side = (int)java.lang.Math.ceil(mRadius * 2) + 2;
+        if(side <= 2) {
+            return false;    // not laid out yet
+        }
+        if(mRingBitmap != null && mRingBitmap.getWidth() != side) {
+            releaseRingBitmap();
+        }
+        if(mRingBitmap == null) {
+            mRingBitmap = Bitmap.createBitmap(side, side, Bitmap.Config.ARGB_8888);
+            mRingDirty = true;
+        }
+        if(mRingDirty) {
+            mRingBitmap.eraseColor(Color.TRANSPARENT);
+            Canvas c = new Canvas(mRingBitmap);
+            c.translate(side / 2f, side / 2f);
+            c.drawOval(mRingRect, mPaint);
+            mRingDirty = false;
+        }
+        return true;
+    }
+
+    private void releaseRingBitmap() {
+        if(mRingBitmap != null) {
+            mRingBitmap.recycle();
+            mRingBitmap = null;
+        }
+    }
+
     @Override 
     protected void onDraw(Canvas canvas) {
-        float r = CENTER_X - mPaint.getStrokeWidth() * 0.5f;
-        
-        canvas.translate(CENTER_X, CENTER_X);
-        canvas.drawOval(new RectF(-r, -r, r, r), mPaint);
+        canvas.translate(mCenterX, mCenterY);
+        drawRing(canvas);
         
         drawSVRegion(canvas);
+        drawMarker(canvas, mSVMarkerX, mSVMarkerY);
+        drawMarker(canvas, mRingMarkerX, mRingMarkerY);
 
-        canvas.drawRoundRect(new RectF(OK_X0, OK_Y0, OK_X1, OK_Y1), 5, 5, mOKPaint);
+        canvas.drawRoundRect(mOKRect, mCorner, mCorner, mOKPaint);
         
-        Paint textPaint = new Paint();
-        textPaint.setColor(Color.WHITE);
-        textPaint.setTextSize(20);
-        textPaint.setAntiAlias(true);
-        //canvas.drawText("OK", 0 - 12, (float) (CENTER_X * 1.2) + 22, textPaint);
-        canvas.drawText("OK", 0 - 14, (float) (CENTER_X * 1.4) + 2, textPaint);
+        canvas.drawText("OK", 0, mTextBaseline, mTextPaint);
 
         if (mTrackingOK) {
             int c = mOKPaint.getColor();
@@ -170,172 +662,265 @@ public class ColorPickerView extends View {
             else 
                 mOKPaint.setAlpha(0x80);
 
-            float padding = 5;
-            //canvas.drawCircle(0, 0, CENTER_RADIUS + mOKPaint.getStrokeWidth(), mOKPaint);
-            canvas.drawRoundRect(new RectF(OK_X0 - padding, OK_Y0 - padding, OK_X1 + padding, OK_Y1 + padding), 5, 5, mOKPaint);
+            canvas.drawRoundRect(mHaloRect, mCorner, mCorner, mOKPaint);
             mOKPaint.setStyle(Paint.Style.FILL);
             mOKPaint.setColor(c);
         }                    
+
+        if(mOnFirstDraw != null) {
+            final Runnable r = mOnFirstDraw;
+            mOnFirstDraw = null;
+            r.run();
+        }
     }
     
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        setMeasuredDimension(CENTER_X * 2, (int)(CENTER_Y * 2.8));
-    }
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if(!mRetainCaches) {
+            releaseCaches();
+        }
 
-    private int floatToByte(float x) {
-        int n = java.lang.Math.round(x);
-        return n;
+        removeCallbacks(mApplyInput);
+        mApplyScheduled = false;
+        mInputPending = false;
     }
 
-    private int pinToByte(int n) {
-        if (n < 0) 
-            n = 0;
-        else if (n > 255) 
-            n = 255;
-        return n;
+    void releaseCaches() {
+        if(mSVCache != null) {
+            mSVCache.clear();
+        }
+        mSVPlane = null;
+        mSVDirty = true;
+        releaseRingBitmap();
     }
-    
-    private float getHue(int color) {
-    	float hsv[] = new float[3];
-    	Color.colorToHSV(color, hsv);
-    	return hsv[0];
+
+    void setRetainCaches(boolean retain) {
+        mRetainCaches = retain;
     }
-    
-    private int ave(int s, int d, float p) {
-        return s + java.lang.Math.round(p * (d - s));
+
+    /**
+     * Runs r once, right after the next frame of this view has been drawn.
+     */
+    void setOnFirstDrawListener(Runnable r) {
+        mOnFirstDraw = r;
     }
-    
-    private int interpColor(int colors[], float unit) {
-        if (unit <= 0) {
-            return colors[0];
+
+    /**
+     * Lays the view out at the given size ahead of time and renders its ring.
+     * The saturation/value plane of the current hue is rasterized on executor
+     * (pure computation) and handed to the cache on the UI thread, or rendered
+     * right away when executor is null.
+     */
+    void prewarm(int width, int height, Executor executor) {
+        measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        layout(0, 0, width, height);
+        if(mRingDrawMode == RING_DRAW_CACHED) {
+            prepareRingBitmap();
         }
-        if (unit >= 1) {
-            return colors[colors.length - 1];
+        if(mSVCache == null) {
+            return;
         }
-        
-        float p = unit * (colors.length - 1);
-        int i = (int)p;
-        p -= i;
-
-        // now p is just the fractional part [0...1) and i is the index
-        int c0 = colors[i];
-        int c1 = colors[i+1];
-        int a = ave(Color.alpha(c0), Color.alpha(c1), p);
-        int r = ave(Color.red(c0),   Color.red(c1),   p);
-        int g = ave(Color.green(c0), Color.green(c1), p);
-        int b = ave(Color.blue(c0),  Color.blue(c1),  p);
-        
-        return Color.argb(a, r, g, b);
+        if(executor == null) {
+            mSVCache.get(selectHue);
+            return;
+        }
+
+        final float hue = java.lang.Math.round(selectHue);    // the cache's granularity
+        final int model = mSVCache.getModel();
+        final int side = mSVCache.getWidth();
+        // the view is not attached yet, so View#post would park the result in the
+        // worker thread's run queue, which nothing drains below API 24
+        final Handler main = new Handler(Looper.getMainLooper());
+        executor.execute(new Runnable() {
+            public void run() {
+                final int[] pixels = new int[side * side];
+                new SVPlaneRasterizer(model, SVPlaneRasterizer.DEFAULT_PARALLEL_THRESHOLD)
+                        .rasterize(hue, side, side, pixels);
+                main.post(new Runnable() {
+                    public void run() {
+                        // dropped if the view was resized or switched model meanwhile
+                        if(mSVCache != null && mSVCache.getModel() == model && mSVCache.getWidth() == side) {
+                            mSVCache.put(hue, pixels);
+                            mSVDirty = true;
+                        }
+                    }
+                });
+            }
+        });
     }
-    
-    private int rotateColor(int color, float rad) {
-        float deg = rad * 180 / PI;
-        int r = Color.red(color);
-        int g = Color.green(color);
-        int b = Color.blue(color);
-        
-        ColorMatrix cm  = new ColorMatrix();
-        ColorMatrix tmp = new ColorMatrix();
-
-        cm.setRGB2YUV();
-        tmp.setRotate(0, deg);
-        cm.postConcat(tmp);
-        tmp.setYUV2RGB();
-        cm.postConcat(tmp);
-        
-        final float[] a = cm.getArray();
 
-        int ir = floatToByte(a[0] * r +  a[1] * g +  a[2] * b);
-        int ig = floatToByte(a[5] * r +  a[6] * g +  a[7] * b);
-        int ib = floatToByte(a[10] * r + a[11] * g + a[12] * b);
-        
-        return Color.argb(Color.alpha(color), pinToByte(ir), pinToByte(ig), pinToByte(ib));
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final float density = getResources().getDisplayMetrics().density;
+        setMeasuredDimension(
+                resolveSize((int)(DEFAULT_WIDTH_DIP * density + 0.5f), widthMeasureSpec),
+                resolveSize((int)(DEFAULT_HEIGHT_DIP * density + 0.5f), heightMeasureSpec));
+    }
+
+    private int rotateColor(int color, float rad) {
+        return HueRotation.rotate(color, rad * 180 / PI);
     }
     
     private int setHSVColor(float hue, float saturation, float value) {
-        float[] hsv = new float[3];
         if(hue >= 360)
         	hue = 359;
         else if(hue < 0)
         	hue = 0;
 
-        if(saturation > 1)
-        	saturation = 1;
-        else if(saturation < 0)
-        	saturation = 0;
-        
-        if(value > 1)
-        	value = 1;
-        else if(value < 0)
-        	value = 0;
-
-        hsv[0] = hue;
-        hsv[1] = saturation;
-        hsv[2] = value;
-        
-        return Color.HSVToColor(hsv);
+        return ColorMath.hsvToColor(hue, saturation, value);
     }
 
     private static final float PI = 3.1415927f;
 
+    /*
+     * Ring and SV drags are not applied per MotionEvent. The samples are folded
+     * into one pending position and applied at most once per frame interval, so
+     * a burst of events from a high rate touch panel costs one color update and
+     * one set of invalidates.
+     */
+    private static final long FRAME_INTERVAL = 16;
+    private static final int TARGET_RING = 0;
+    private static final int TARGET_SV = 1;
+
+    private float mTouchSmoothing = 0;
+    private boolean mInputPending;
+    private boolean mApplyScheduled;
+    private boolean mSmoothing;
+    private int mInputTarget;
+    private float mInputX, mInputY;
+    private long mLastApplyTime;
+
+    private final Runnable mApplyInput = new Runnable() {
+        public void run() {
+            mApplyScheduled = false;
+            applyPendingInput();
+        }
+    };
+
+    private void queueInput(MotionEvent event, int target, float x, float y) {
+        if(mTouchSmoothing > 0) {
+            final float keep = mTouchSmoothing;
+            final int historySize = event.getHistorySize();
+
+            if(!mSmoothing || mInputTarget != target) {
+                mInputX = (historySize > 0) ? event.getHistoricalX(0) - mCenterX : x;
+                mInputY = (historySize > 0) ? event.getHistoricalY(0) - mCenterY : y;
+                mSmoothing = true;
+            }
+            for(int i = 0; i < historySize; i++) {
+                mInputX += (event.getHistoricalX(i) - mCenterX - mInputX) * (1 - keep);
+                mInputY += (event.getHistoricalY(i) - mCenterY - mInputY) * (1 - keep);
+            }
+            mInputX += (x - mInputX) * (1 - keep);
+            mInputY += (y - mInputY) * (1 - keep);
+        }
+        else {
+            mInputX = x;
+            mInputY = y;
+        }
+        mInputTarget = target;
+        mInputPending = true;
+
+        if(!mApplyScheduled) {
+            final long delay = mLastApplyTime + FRAME_INTERVAL - SystemClock.uptimeMillis();
+            mApplyScheduled = true;
+            postDelayed(mApplyInput, (delay > 0) ? delay : 0);
+        }
+    }
+
+    private void flushInput() {
+        if(mApplyScheduled) {
+            removeCallbacks(mApplyInput);
+            mApplyScheduled = false;
+        }
+        applyPendingInput();
+        mSmoothing = false;
+    }
+
+    private void applyPendingInput() {
+        if(!mInputPending) {
+            return;
+        }
+        mInputPending = false;
+        mLastApplyTime = SystemClock.uptimeMillis();
+
+        if(mInputTarget == TARGET_RING) {
+            setHueIndex(mHueWheel.indexOf(mInputX, mInputY));
+        }
+        else {
+            float saturation = pin((mInputX - mSVRect.left) / mSVRect.width());
+            float value = pin((mInputY - mSVRect.top) / mSVRect.height());
+            setSelectSV(saturation, value, planeColor(saturation, value));
+        }
+
+        if(mColorChanging) {
+            mColorChanging = false;
+            if(mChangingDispatcher != null) {
+                mChangingDispatcher.post(selectColor);
+            }
+            else if(mChangingListener != null) {
+                mChangingListener.colorChanging(selectColor);
+            }
+        }
+    }
+
+    private static float pin(float x) {
+        if(x < 0)
+            return 0;
+        if(x > 1)
+            return 1;
+        return x;
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        float x = event.getX() - CENTER_X;
-        float y = event.getY() - CENTER_Y;
-        float r = (float)(java.lang.Math.sqrt(x*x + y*y));
+        float x = event.getX() - mCenterX;
+        float y = event.getY() - mCenterY;
+        float r2 = x*x + y*y;
         boolean inOK = false;
         boolean inOval = false;
         boolean inRect = false;
         
-        if(r <= CENTER_X) {
-        	if(r > CENTER_X - CENTER_RADIUS)
+        if(r2 <= mOuterRadiusSq) {
+        	if(r2 > mInnerRadiusSq)
         		inOval = true;            		
-        	else if(x >= OK_X0 && x < OK_X1 && y >= OK_X0 && y < OK_X1)
+        	else if(x >= mSVRect.left && x < mSVRect.right && y >= mSVRect.top && y < mSVRect.bottom)
         		inRect = true;
         }
-        else if(x >= OK_X0 && x < OK_X1 && y >= OK_Y0 && y < OK_Y1){
+        else if(x >= mOKRect.left && x < mOKRect.right && y >= mOKRect.top && y < mOKRect.bottom){
         	inOK = true;
         }
         	
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
+                mSmoothing = false;
                 mTrackingOK = inOK;
                 if (inOK) {
                     mHighlightOK = true;
-                    invalidate();
+                    invalidateLocal(mHaloRect);
                     break;
                 }
             case MotionEvent.ACTION_MOVE:
                 if (mTrackingOK) {
                     if (mHighlightOK != inOK) {
                         mHighlightOK = inOK;
-                        invalidate();
+                        invalidateLocal(mHaloRect);
                     }
                 } 
                 else if(inOval) {
-                    float angle = (float)java.lang.Math.atan2(y, x);
-                    // need to turn angle [-PI ... PI] into unit [0....1]
-                    float unit = angle/(2*PI);
-                    if (unit < 0) {
-                        unit += 1;
-                    }
-                    selectColor = interpColor(mColors, unit);
-                    mOKPaint.setColor(selectColor);
-                    //mChroma[1] = selectColor;
-                    selectHue = getHue(selectColor);
-                    //lg = new LinearGradient(OK_X0, 0, OK_X1, 0, mChroma, null, Shader.TileMode.CLAMP);
-                    //mPaintC.setShader(lg);
-                    invalidate();
+                    queueInput(event, TARGET_RING, x, y);
                 } 
                 else if(inRect){
-                	int selectColor2 = setHSVColor(selectHue, (x - OK_X0)/CENTER_X, (y - OK_X0)/CENTER_Y);
-                	selectColor = selectColor2;
-                    mOKPaint.setColor(selectColor);
-                    invalidate();
+                    queueInput(event, TARGET_SV, x, y);
                 }
                 break;
+            case MotionEvent.ACTION_CANCEL:
+                flushInput();
+                break;
             case MotionEvent.ACTION_UP:
+                flushInput();
                 if (mTrackingOK) {
                     if (inOK) {
                     	if(mListener != null) {
@@ -343,7 +928,7 @@ public class ColorPickerView extends View {
                     	}
                     }
                     mTrackingOK = false;    // so we draw w/o halo
-                    invalidate();
+                    invalidateLocal(mHaloRect);
                 }
                 break;
         }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * A single row of swatches showing the favorites, then the recent colors of
+ * a {@link RecentColors}. Favorites are marked with a white dot.
+ *
+ * Tapping a swatch reports its color; a long press toggles it as a favorite.
+ * The swatches are read straight from the store's arrays on every draw.
+ */
+public class ColorSwatchStrip extends View {
+
+    public interface OnSwatchClickListener {
+        void onSwatchClick(int color);
+    }
+
+    private static final int DEFAULT_HEIGHT_DIP = 40;
+
+    private RecentColors mColors;
+    private OnSwatchClickListener mListener;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mMarkPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mRect = new RectF();
+
+    private int mDownIndex = -1;
+    private boolean mLongPressed;
+
+    private final Runnable mLongPress = new Runnable() {
+        public void run() {
+            if(mDownIndex >= 0 && mColors != null) {
+                final int color = swatchColor(mDownIndex);
+                if(mColors.isFavorite(color)) {
+                    mColors.removeFavorite(color);
+                }
+                else {
+                    mColors.addFavorite(color);
+                }
+                mLongPressed = true;
+                invalidate();
+            }
+        }
+    };
+
+    public ColorSwatchStrip(Context context) {
+        this(context, null);
+    }
+
+    public ColorSwatchStrip(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mPaint.setStyle(Paint.Style.FILL);
+        mMarkPaint.setStyle(Paint.Style.FILL);
+        mMarkPaint.setColor(0xFFFFFFFF);
+    }
+
+    public void setColors(RecentColors colors) {
+        mColors = colors;
+        invalidate();
+    }
+
+    public void setOnSwatchClickListener(OnSwatchClickListener l) {
+        mListener = l;
+    }
+
+    private int swatchCount() {
+        if(mColors == null) {
+            return 0;
+        }
+        return mColors.getFavoriteCount() + mColors.getRecentCount();
+    }
+
+    private int swatchColor(int index) {
+        final int favorites = mColors.getFavoriteCount();
+        return (index < favorites) ? mColors.getFavorite(index) : mColors.getRecent(index - favorites);
+    }
+
+    /** swatches are squares as tall as the strip, laid out from the left */
+    private float swatchSize() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final int count = swatchCount();
+        final float size = swatchSize();
+        if(count == 0 || size <= 0) {
+            return;
+        }
+
+        final float gap = size / 8;
+        final float top = getPaddingTop();
+        final float right = getWidth() - getPaddingRight();
+        float left = getPaddingLeft();
+
+        for(int i = 0; i < count && left + size <= right; i++, left += size) {
+            final int color = swatchColor(i);
+            mRect.set(left + gap, top + gap, left + size - gap, top + size - gap);
+            mPaint.setColor(color);
+            canvas.drawRoundRect(mRect, gap, gap, mPaint);
+            if(i < mColors.getFavoriteCount()) {
+                canvas.drawCircle(mRect.right - gap * 1.5f, mRect.top + gap * 1.5f, gap * 0.75f, mMarkPaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        final float size = swatchSize();
+        int index = -1;
+        if(size > 0) {
+            index = (int)((event.getX() - getPaddingLeft()) / size);
+            if(event.getX() < getPaddingLeft() || index >= swatchCount()) {
+                index = -1;
+            }
+        }
+
+        switch(event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownIndex = index;
+                mLongPressed = false;
+                if(index >= 0) {
+                    postDelayed(mLongPress, ViewConfiguration.getLongPressTimeout());
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if(index != mDownIndex) {
+                    removeCallbacks(mLongPress);
+                    mDownIndex = -1;
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                removeCallbacks(mLongPress);
+                if(index >= 0 && index == mDownIndex && !mLongPressed && mListener != null) {
+                    mListener.onSwatchClick(swatchColor(index));
+                }
+                mDownIndex = -1;
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                removeCallbacks(mLongPress);
+                mDownIndex = -1;
+                break;
+        }
+        return true;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mLongPress);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final float density = getResources().getDisplayMetrics().density;
+        setMeasuredDimension(
+                getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize((int)(DEFAULT_HEIGHT_DIP * density + 0.5f), heightMeasureSpec));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * Hue rotation in YUV space, the same transform ColorMatrix builds with
+ * setRGB2YUV(), setRotate(0, degrees) and setYUV2RGB().
+ *
+ * The 3x3 matrices are precomputed in 16.16 fixed point for every whole degree,
+ * so rotating a color is nine integer multiplies. Pixel buffers can be rotated
+ * in bulk with {@link #rotate(int[], int, int[], int, int, float)}.
+ */
+public final class HueRotation {
+
+    private static final int STEPS = 360;
+    private static final int SHIFT = 16;
+    private static final int HALF = 1 << (SHIFT - 1);
+
+    /** 9 coefficients per whole degree, row major */
+    private static final int[] FIXED = new int[STEPS * 9];
+
+    static {
+        final double[] m = new double[9];
+        for(int deg = 0; deg < STEPS; deg++) {
+            matrix(deg, m);
+            for(int i = 0; i < 9; i++) {
+                FIXED[deg * 9 + i] = (int)java.lang.Math.round(m[i] * (1 << SHIFT));
+            }
+        }
+    }
+
+    private HueRotation() {
+    }
+
+    /**
+     * Rotates the hue of a single color. Alpha is kept as is.
+     *
+     * @param degrees rotation, quantized to whole degrees
+     */
+    public static int rotate(int color, float degrees) {
+        final int base = quantize(degrees) * 9;
+        final int[] m = FIXED;
+
+        final int r = (color >> 16) & 0xFF;
+        final int g = (color >> 8) & 0xFF;
+        final int b = color & 0xFF;
+
+        final int ir = pinToByte((m[base]     * r + m[base + 1] * g + m[base + 2] * b + HALF) >> SHIFT);
+        final int ig = pinToByte((m[base + 3] * r + m[base + 4] * g + m[base + 5] * b + HALF) >> SHIFT);
+        final int ib = pinToByte((m[base + 6] * r + m[base + 7] * g + m[base + 8] * b + HALF) >> SHIFT);
+
+        return (color & 0xFF000000) | (ir << 16) | (ig << 8) | ib;
+    }
+
+    /**
+     * Rotates the hue of count pixels from src into dst. src and dst may be
+     * the same array.
+     *
+     * @param degrees rotation, quantized to whole degrees
+     */
+    public static void rotate(int[] src, int srcOffset, int[] dst, int dstOffset, int count, float degrees) {
+        final int base = quantize(degrees) * 9;
+        final int m0 = FIXED[base],     m1 = FIXED[base + 1], m2 = FIXED[base + 2];
+        final int m3 = FIXED[base + 3], m4 = FIXED[base + 4], m5 = FIXED[base + 5];
+        final int m6 = FIXED[base + 6], m7 = FIXED[base + 7], m8 = FIXED[base + 8];
+
+        for(int i = 0; i < count; i++) {
+            final int color = src[srcOffset + i];
+            final int r = (color >> 16) & 0xFF;
+            final int g = (color >> 8) & 0xFF;
+            final int b = color & 0xFF;
+
+            final int ir = pinToByte((m0 * r + m1 * g + m2 * b + HALF) >> SHIFT);
+            final int ig = pinToByte((m3 * r + m4 * g + m5 * b + HALF) >> SHIFT);
+            final int ib = pinToByte((m6 * r + m7 * g + m8 * b + HALF) >> SHIFT);
+
+            dst[dstOffset + i] = (color & 0xFF000000) | (ir << 16) | (ig << 8) | ib;
+        }
+    }
+
+    /**
+     * Writes the exact (not quantized) 3x3 rotation matrix, row major, into out.
+     */
+    public static void getMatrix(float degrees, float[] out) {
+        final double[] m = new double[9];
+        matrix(degrees, m);
+        for(int i = 0; i < 9; i++) {
+            out[i] = (float)m[i];
+        }
+    }
+
+    private static int quantize(float degrees) {
+        int deg = java.lang.Math.round(degrees) % STEPS;
+        if(deg < 0) {
+            deg += STEPS;
+        }
+        return deg;
+    }
+
+    private static int pinToByte(int n) {
+        if (n < 0)
+            n = 0;
+        else if (n > 255)
+            n = 255;
+        return n;
+    }
+
+    /**
+     * m = YUV2RGB * rotate(degrees around Y) * RGB2YUV
+     */
+    private static void matrix(double degrees, double[] m) {
+        final double rad = degrees * java.lang.Math.PI / 180;
+        final double cos = java.lang.Math.cos(rad);
+        final double sin = java.lang.Math.sin(rad);
+
+        final double[] rgb2yuv = {
+                 0.299,    0.587,    0.114,
+                -0.16874, -0.33126,  0.5,
+                 0.5,     -0.41869, -0.08131
+        };
+        final double[] rotate = {
+                1, 0,    0,
+                0, cos,  sin,
+                0, -sin, cos
+        };
+        final double[] yuv2rgb = {
+                1,  0,        1.402,
+                1, -0.34414, -0.71414,
+                1,  1.772,    0
+        };
+
+        final double[] tmp = new double[9];
+        multiply(rotate, rgb2yuv, tmp);
+        multiply(yuv2rgb, tmp, m);
+    }
+
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for(int row = 0; row < 3; row++) {
+            for(int col = 0; col < 3; col++) {
+                out[row * 3 + col] = a[row * 3] * b[col]
+                        + a[row * 3 + 1] * b[3 + col]
+                        + a[row * 3 + 2] * b[6 + col];
+            }
+        }
+    }
+}
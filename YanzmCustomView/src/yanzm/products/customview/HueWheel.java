@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * Lookup table for the hue ring of ColorPickerView.
+ *
+ * The ring colors are interpolated once into a high resolution table together
+ * with their hues, and a touch vector is mapped to a table index with an
+ * octant-folded arctangent table, so a drag on the ring costs a couple of
+ * lookups instead of sqrt, atan2, interpolation and an RGB to HSV round trip.
+ *
+ * Colors between two stops are blended either on the gamma-encoded channels,
+ * like SweepGradient does, or in linear light through SRGBTransfer's tables,
+ * which avoids the dark, muddy midpoints between saturated stops.
+ */
+public final class HueWheel {
+
+    public static final int DEFAULT_SIZE = 4096;
+
+    /** atan(i / ATAN_SIZE) in turns, for i in [0 ... ATAN_SIZE] (covers one octant) */
+    private static final int ATAN_SIZE = 2048;
+    private static final float[] ATAN = new float[ATAN_SIZE + 1];
+
+    static {
+        for(int i = 0; i <= ATAN_SIZE; i++) {
+            ATAN[i] = (float)(java.lang.Math.atan((double)i / ATAN_SIZE) / (2 * java.lang.Math.PI));
+        }
+    }
+
+    private final int mSize;
+    private final int[] mColors;
+    private final float[] mHues;
+
+    public HueWheel(int[] colors) {
+        this(colors, DEFAULT_SIZE, false);
+    }
+
+    /**
+     * @param colors ring colors, evenly spaced clockwise starting at 3 o'clock
+     *               (same layout as SweepGradient)
+     * @param size number of table entries
+     * @param linearLight blend between stops in linear light instead of sRGB
+     */
+    public HueWheel(int[] colors, int size, boolean linearLight) {
+        mSize = size;
+        mColors = new int[size];
+        mHues = new float[size];
+
+        for(int i = 0; i < size; i++) {
+            final int color = interpColor(colors, (float)i / size, linearLight);
+            mColors[i] = color;
+            mHues[i] = ColorMath.hue(color);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int colorAt(int index) {
+        return mColors[index];
+    }
+
+    public float hueAt(int index) {
+        return mHues[index];
+    }
+
+    /**
+     * Maps a vector from the ring center (y pointing down) to a table index.
+     */
+    public int indexOf(float x, float y) {
+        final float ax = (x < 0) ? -x : x;
+        final float ay = (y < 0) ? -y : y;
+
+        float turn;
+        if(ay <= ax) {
+            if(ax == 0) {
+                return 0;
+            }
+            turn = ATAN[(int)(ay / ax * ATAN_SIZE + 0.5f)];
+        }
+        else {
+            turn = 0.25f - ATAN[(int)(ax / ay * ATAN_SIZE + 0.5f)];
+        }
+
+        if(x < 0) {
+            turn = 0.5f - turn;
+        }
+        if(y < 0) {
+            turn = 1 - turn;
+        }
+
+        int index = (int)(turn * mSize);
+        if(index >= mSize) {
+            index -= mSize;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index whose hue is the closest to the given one.
+     */
+    public int indexOfHue(float hue) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for(int i = 0; i < mSize; i++) {
+            float d = mHues[i] - hue;
+            if(d < 0) {
+                d = -d;
+            }
+            if(d > 180) {
+                d = 360 - d;
+            }
+            if(d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int ave(int s, int d, float p) {
+        return s + java.lang.Math.round(p * (d - s));
+    }
+
+    private static int aveLinear(int s, int d, float p) {
+        final float ls = SRGBTransfer.toLinear(s);
+        return SRGBTransfer.fromLinear(ls + p * (SRGBTransfer.toLinear(d) - ls));
+    }
+
+    /**
+     * Interpolates along evenly spaced colors. With linearLight the color
+     * channels are blended in linear light; alpha is always blended as is.
+     */
+    static int interpColor(int colors[], float unit, boolean linearLight) {
+        if (unit <= 0) {
+            return colors[0];
+        }
+        if (unit >= 1) {
+            return colors[colors.length - 1];
+        }
+
+        float p = unit * (colors.length - 1);
+        int i = (int)p;
+        p -= i;
+
+        // now p is just the fractional part [0...1) and i is the index
+        int c0 = colors[i];
+        int c1 = colors[i+1];
+        int a = ave(ColorMath.alpha(c0), ColorMath.alpha(c1), p);
+        if(linearLight) {
+            int r = aveLinear(ColorMath.red(c0),   ColorMath.red(c1),   p);
+            int g = aveLinear(ColorMath.green(c0), ColorMath.green(c1), p);
+            int b = aveLinear(ColorMath.blue(c0),  ColorMath.blue(c1),  p);
+            return ColorMath.argb(a, r, g, b);
+        }
+        int r = ave(ColorMath.red(c0),   ColorMath.red(c1),   p);
+        int g = ave(ColorMath.green(c0), ColorMath.green(c1), p);
+        int b = ave(ColorMath.blue(c0),  ColorMath.blue(c1),  p);
+
+        return ColorMath.argb(a, r, g, b);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * OKLab / OKLCH conversions on int-packed sRGB colors. Hues are in degrees
+ * [0 ... 360).
+ */
+public final class OkLab {
+
+    private static final float RAD_TO_DEG = (float)(180 / java.lang.Math.PI);
+    private static final float DEG_TO_RAD = (float)(java.lang.Math.PI / 180);
+
+    /** bisection steps of maxChroma(), enough for 8 bit output */
+    private static final int GAMUT_STEPS = 14;
+    /** no sRGB color has an OKLCH chroma above this */
+    private static final float CHROMA_LIMIT = 0.33f;
+
+    private OkLab() {
+    }
+
+    /**
+     * Converts a color to OKLab.
+     *
+     * @param lab receives L [0 ... 1], a and b
+     */
+    public static void colorToOklab(int color, float[] lab) {
+        final float r = SRGBTransfer.toLinear((color >> 16) & 0xFF);
+        final float g = SRGBTransfer.toLinear((color >> 8) & 0xFF);
+        final float b = SRGBTransfer.toLinear(color & 0xFF);
+
+        final float l = cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * b);
+        final float m = cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * b);
+        final float s = cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * b);
+
+        lab[0] = 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+        lab[1] = 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+        lab[2] = 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+    }
+
+    /**
+     * Converts a color to OKLCH.
+     *
+     * @param lch receives L [0 ... 1], chroma and hue [0 ... 360)
+     */
+    public static void colorToOklch(int color, float[] lch) {
+        colorToOklab(color, lch);
+        final float a = lch[1];
+        final float b = lch[2];
+
+        lch[1] = (float)java.lang.Math.sqrt(a * a + b * b);
+        float h = (float)java.lang.Math.atan2(b, a) * RAD_TO_DEG;
+        if(h < 0) {
+            h += 360;
+        }
+        lch[2] = h;
+    }
+
+    /**
+     * Converts OKLab to an opaque color, pinning out of gamut channels.
+     */
+    public static int oklabToColor(float lightness, float a, float b) {
+        final float l = cube(lightness + 0.3963377774f * a + 0.2158037573f * b);
+        final float m = cube(lightness - 0.1055613458f * a - 0.0638541728f * b);
+        final float s = cube(lightness - 0.0894841775f * a - 1.2914855480f * b);
+
+        final int ir = SRGBTransfer.fromLinear( 4.0767416621f * l - 3.3077115913f * m + 0.2309699292f * s);
+        final int ig = SRGBTransfer.fromLinear(-1.2684380046f * l + 2.6097574011f * m - 0.3413193965f * s);
+        final int ib = SRGBTransfer.fromLinear(-0.0041960863f * l - 0.7034186147f * m + 1.7076147010f * s);
+
+        return 0xFF000000 | (ir << 16) | (ig << 8) | ib;
+    }
+
+    /**
+     * Converts OKLCH to an opaque color, pinning out of gamut channels.
+     */
+    public static int oklchToColor(float lightness, float chroma, float hue) {
+        final float rad = hue * DEG_TO_RAD;
+        return oklabToColor(lightness,
+                chroma * (float)java.lang.Math.cos(rad), chroma * (float)java.lang.Math.sin(rad));
+    }
+
+    /**
+     * Fills out[offset ... offset + count) with one row of colors of the same
+     * lightness and hue, the chroma starting at chroma0 and growing by
+     * chromaStep for every pixel. The hue's sine and cosine are computed once
+     * per row.
+     */
+    public static void oklchRowToColors(float lightness, float chroma0, float chromaStep, float hue,
+            int[] out, int offset, int count) {
+        final float rad = hue * DEG_TO_RAD;
+        final float cos = (float)java.lang.Math.cos(rad);
+        final float sin = (float)java.lang.Math.sin(rad);
+
+        // l_, m_ and s_ are linear in chroma along the row
+        final float dl = 0.3963377774f * cos + 0.2158037573f * sin;
+        final float dm = -0.1055613458f * cos - 0.0638541728f * sin;
+        final float ds = -0.0894841775f * cos - 1.2914855480f * sin;
+
+        float chroma = chroma0;
+        for(int i = offset, end = offset + count; i < end; i++, chroma += chromaStep) {
+            final float l = cube(lightness + dl * chroma);
+            final float m = cube(lightness + dm * chroma);
+            final float s = cube(lightness + ds * chroma);
+
+            final int ir = SRGBTransfer.fromLinear( 4.0767416621f * l - 3.3077115913f * m + 0.2309699292f * s);
+            final int ig = SRGBTransfer.fromLinear(-1.2684380046f * l + 2.6097574011f * m - 0.3413193965f * s);
+            final int ib = SRGBTransfer.fromLinear(-0.0041960863f * l - 0.7034186147f * m + 1.7076147010f * s);
+
+            out[i] = 0xFF000000 | (ir << 16) | (ig << 8) | ib;
+        }
+    }
+
+    /**
+     * Converts colors[offset ... offset + count) to OKLab. Components are
+     * stored interleaved, three floats per color, starting at lab[labOffset].
+     */
+    public static void colorsToOklab(int[] colors, int offset, int count, float[] lab, int labOffset) {
+        for(int i = 0; i < count; i++) {
+            final int color = colors[offset + i];
+            final float r = SRGBTransfer.toLinear((color >> 16) & 0xFF);
+            final float g = SRGBTransfer.toLinear((color >> 8) & 0xFF);
+            final float b = SRGBTransfer.toLinear(color & 0xFF);
+
+            final float l = cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * b);
+            final float m = cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * b);
+            final float s = cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * b);
+
+            final int o = labOffset + i * 3;
+            lab[o]     = 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+            lab[o + 1] = 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+            lab[o + 2] = 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+        }
+    }
+
+    /**
+     * Returns the largest chroma that stays inside the sRGB gamut for the
+     * given lightness and hue.
+     */
+    public static float maxChroma(float lightness, float hue) {
+        if(lightness <= 0 || lightness >= 1) {
+            return 0;
+        }
+
+        final float rad = hue * DEG_TO_RAD;
+        final float cos = (float)java.lang.Math.cos(rad);
+        final float sin = (float)java.lang.Math.sin(rad);
+        final float dl = 0.3963377774f * cos + 0.2158037573f * sin;
+        final float dm = -0.1055613458f * cos - 0.0638541728f * sin;
+        final float ds = -0.0894841775f * cos - 1.2914855480f * sin;
+
+        float lo = 0;
+        float hi = CHROMA_LIMIT;
+        for(int i = 0; i < GAMUT_STEPS; i++) {
+            final float chroma = (lo + hi) * 0.5f;
+            final float l = cube(lightness + dl * chroma);
+            final float m = cube(lightness + dm * chroma);
+            final float s = cube(lightness + ds * chroma);
+
+            final float r =  4.0767416621f * l - 3.3077115913f * m + 0.2309699292f * s;
+            final float g = -1.2684380046f * l + 2.6097574011f * m - 0.3413193965f * s;
+            final float b = -0.0041960863f * l - 0.7034186147f * m + 1.7076147010f * s;
+
+            if(r < 0 || r > 1 || g < 0 || g > 1 || b < 0 || b > 1) {
+                hi = chroma;
+            }
+            else {
+                lo = chroma;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Fast cube root : exponent-splitting estimate plus two Newton steps,
+     * about 1e-6 relative error.
+     */
+    public static float cbrt(float x) {
+        if(x == 0) {
+            return 0;
+        }
+        final boolean negative = x < 0;
+        if(negative) {
+            x = -x;
+        }
+
+        float y = Float.intBitsToFloat(Float.floatToRawIntBits(x) / 3 + 0x2a514067);
+        y = (2 * y + x / (y * y)) * (1f / 3);
+        y = (2 * y + x / (y * y)) * (1f / 3);
+
+        return negative ? -y : y;
+    }
+
+    private static float cube(float x) {
+        return x * x * x;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * Nearest-color index over a fixed palette, kept in OKLab as an implicit k-d
+ * tree. Queries share scratch state, so use an instance from one thread.
+ */
+public final class PaletteIndex {
+
+    private final int mSize;
+    private final int[] mColors;
+    private final float[] mLab;
+    private final byte[] mAxis;
+
+    // query state
+    private final float[] mQuery = new float[3];
+    private float mBestDistance;
+    private int mBest;
+
+    /**
+     * @param palette colors to snap to; must not be empty
+     */
+    public PaletteIndex(int[] palette) {
+        final int n = palette.length;
+        if(n == 0) {
+            throw new IllegalArgumentException("palette is empty");
+        }
+        mSize = n;
+
+        final float[] lab = new float[n * 3];
+        OkLab.colorsToOklab(palette, 0, n, lab, 0);
+
+        final int[] order = new int[n];
+        for(int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        mAxis = new byte[n];
+        build(order, lab, 0, n);
+
+        mColors = new int[n];
+        mLab = new float[n * 3];
+        for(int i = 0; i < n; i++) {
+            final int src = order[i];
+            mColors[i] = palette[src];
+            mLab[i * 3]     = lab[src * 3];
+            mLab[i * 3 + 1] = lab[src * 3 + 1];
+            mLab[i * 3 + 2] = lab[src * 3 + 2];
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the palette color perceptually closest (OKLab distance) to color.
+     * The alpha of the palette entry is returned as is.
+     */
+    public int nearest(int color) {
+        OkLab.colorToOklab(color, mQuery);
+        mBestDistance = Float.MAX_VALUE;
+        mBest = 0;
+        search(0, mSize);
+        return mColors[mBest];
+    }
+
+    private void search(int lo, int hi) {
+        if(lo >= hi) {
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        final int p = mid * 3;
+        final float[] q = mQuery;
+
+        final float dl = q[0] - mLab[p];
+        final float da = q[1] - mLab[p + 1];
+        final float db = q[2] - mLab[p + 2];
+        final float distance = dl * dl + da * da + db * db;
+        if(distance < mBestDistance) {
+            mBestDistance = distance;
+            mBest = mid;
+        }
+
+        final int axis = mAxis[mid];
+        final float d = q[axis] - mLab[p + axis];
+        if(d < 0) {
+            search(lo, mid);
+            if(d * d < mBestDistance) {
+                search(mid + 1, hi);
+            }
+        }
+        else {
+            search(mid + 1, hi);
+            if(d * d < mBestDistance) {
+                search(lo, mid);
+            }
+        }
+    }
+
+    /**
+     * Arranges order[lo ... hi) so that the middle element is the median along
+     * the axis of widest spread, then recurses into both halves.
+     */
+    private void build(int[] order, float[] lab, int lo, int hi) {
+        if(hi - lo <= 1) {
+            if(hi > lo) {
+                mAxis[lo] = 0;
+            }
+            return;
+        }
+
+        int axis = 0;
+        float widest = -1;
+        for(int k = 0; k < 3; k++) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for(int i = lo; i < hi; i++) {
+                final float v = lab[order[i] * 3 + k];
+                if(v < min) min = v;
+                if(v > max) max = v;
+            }
+            if(max - min > widest) {
+                widest = max - min;
+                axis = k;
+            }
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        select(order, lab, axis, lo, hi - 1, mid);
+        mAxis[mid] = (byte)axis;
+
+        build(order, lab, lo, mid);
+        build(order, lab, mid + 1, hi);
+    }
+
+    /**
+     * Quickselect : moves the k-th smallest element of order[left ... right]
+     * along axis to index k.
+     */
+    private static void select(int[] order, float[] lab, int axis, int left, int right, int k) {
+        while(left < right) {
+            final float pivot = lab[order[(left + right) >>> 1] * 3 + axis];
+            int i = left;
+            int j = right;
+            while(i <= j) {
+                while(lab[order[i] * 3 + axis] < pivot) i++;
+                while(lab[order[j] * 3 + axis] > pivot) j--;
+                if(i <= j) {
+                    final int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j) {
+                right = j;
+            }
+            else if(k >= i) {
+                left = i;
+            }
+            else {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * Tints non-premultiplied ARGB pixels the way PorterDuffColorFilter(tint, mode)
+ * does, the tint being the source. MULTIPLY is [Sa * Da, Sc * Dc] as on Android.
+ */
+public final class PorterDuffCompositor {
+
+    /* same names and order as android.graphics.PorterDuff.Mode */
+    public static final int CLEAR     = 0;
+    public static final int SRC       = 1;
+    public static final int DST       = 2;
+    public static final int SRC_OVER  = 3;
+    public static final int DST_OVER  = 4;
+    public static final int SRC_IN    = 5;
+    public static final int DST_IN    = 6;
+    public static final int SRC_OUT   = 7;
+    public static final int DST_OUT   = 8;
+    public static final int SRC_ATOP  = 9;
+    public static final int DST_ATOP  = 10;
+    public static final int XOR       = 11;
+    public static final int DARKEN    = 12;
+    public static final int LIGHTEN   = 13;
+    public static final int MULTIPLY  = 14;
+    public static final int SCREEN    = 15;
+
+    private static final String[] NAMES = {
+        "CLEAR", "SRC", "DST", "SRC_OVER", "DST_OVER", "SRC_IN", "DST_IN", "SRC_OUT",
+        "DST_OUT", "SRC_ATOP", "DST_ATOP", "XOR", "DARKEN", "LIGHTEN", "MULTIPLY", "SCREEN"
+    };
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 128 * 128;
+
+    private PorterDuffCompositor() {
+    }
+
+    /**
+     * Maps a PorterDuff.Mode name, e.g. "SRC_ATOP", to one of the constants.
+     */
+    public static int modeOf(String name) {
+        for(int i = 0; i < NAMES.length; i++) {
+            if(NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown mode : " + name);
+    }
+
+    public static String nameOf(int mode) {
+        checkMode(mode);
+        return NAMES[mode];
+    }
+
+    /**
+     * Composites src over a single dst color.
+     */
+    public static int composite(int src, int dst, int mode) {
+        checkMode(mode);
+        final int sa = src >>> 24;
+        return blend(mode, sa, ColorMath.red(src) * sa, ColorMath.green(src) * sa,
+                ColorMath.blue(src) * sa, dst);
+    }
+
+    /**
+     * Composites tint over src[srcOffset ... srcOffset + count) into dst.
+     * src and dst may be the same array.
+     */
+    public static void tintRow(int tint, int mode, int[] src, int srcOffset,
+            int[] dst, int dstOffset, int count) {
+        checkMode(mode);
+        final int sa = tint >>> 24;
+        final int sr = ColorMath.red(tint) * sa;
+        final int sg = ColorMath.green(tint) * sa;
+        final int sb = ColorMath.blue(tint) * sa;
+        for(int i = 0; i < count; i++) {
+            dst[dstOffset + i] = blend(mode, sa, sr, sg, sb, src[srcOffset + i]);
+        }
+    }
+
+    /**
+     * Tints a width x height image in place (row stride = width). Images of
+     * DEFAULT_PARALLEL_THRESHOLD pixels or more are processed in parallel.
+     */
+    public static void tint(final int tint, final int mode, final int[] pixels, final int width, int height) {
+        checkMode(mode);
+        if(pixels.length < width * height) {
+            throw new IllegalArgumentException("pixels too small : " + pixels.length
+                    + " < " + width + " x " + height);
+        }
+        if((long)width * height < DEFAULT_PARALLEL_THRESHOLD) {
+            tintRow(tint, mode, pixels, 0, pixels, 0, width * height);
+            return;
+        }
+
+        RowExecutor.getDefault().run(height, new RowExecutor.RowTask() {
+            public void run(int rowStart, int rowEnd) {
+                final int offset = rowStart * width;
+                tintRow(tint, mode, pixels, offset, pixels, offset, (rowEnd - rowStart) * width);
+            }
+        });
+    }
+
+    /*
+     * Premultiplied channels are kept unrounded as color * alpha (0 ... 255 * 255)
+     * so that low alphas do not lose precision; alphas are plain 0 ... 255.
+     */
+
+    /**
+     * Blends a premultiplied source (sa, sr, sg, sb) with a non-premultiplied
+     * destination color and returns the non-premultiplied result.
+     */
+    private static int blend(int mode, int sa, int sr, int sg, int sb, int dst) {
+        final int da = dst >>> 24;
+
+        final int ra;
+        switch(mode) {
+            case CLEAR:    ra = 0; break;
+            case SRC:      ra = sa; break;
+            case DST:      ra = da; break;
+            case SRC_IN:
+            case DST_IN:
+            case MULTIPLY: ra = div255(sa * da); break;
+            case SRC_OUT:  ra = div255(sa * (255 - da)); break;
+            case DST_OUT:  ra = div255(da * (255 - sa)); break;
+            case SRC_ATOP: ra = da; break;
+            case DST_ATOP: ra = sa; break;
+            case XOR:      ra = div255(sa * (255 - da) + da * (255 - sa)); break;
+            default:       ra = sa + da - div255(sa * da); break;    // *_OVER, DARKEN, LIGHTEN, SCREEN
+        }
+        if(ra == 0) {
+            return 0;
+        }
+
+        final int r = unpremul(channel(mode, sr, ColorMath.red(dst) * da, sa, da), ra);
+        final int g = unpremul(channel(mode, sg, ColorMath.green(dst) * da, sa, da), ra);
+        final int b = unpremul(channel(mode, sb, ColorMath.blue(dst) * da, sa, da), ra);
+        return ColorMath.argb(ra, r, g, b);
+    }
+
+    /**
+     * One premultiplied color channel of the result, same scale as s and d.
+     */
+    private static int channel(int mode, int s, int d, int sa, int da) {
+        switch(mode) {
+            case SRC:      return s;
+            case DST:      return d;
+            case SRC_OVER: return s + div255(d * (255 - sa));
+            case DST_OVER: return d + div255(s * (255 - da));
+            case SRC_IN:   return div255(s * da);
+            case DST_IN:   return div255(d * sa);
+            case SRC_OUT:  return div255(s * (255 - da));
+            case DST_OUT:  return div255(d * (255 - sa));
+            case SRC_ATOP: return div255(s * da + d * (255 - sa));
+            case DST_ATOP: return div255(d * sa + s * (255 - da));
+            case XOR:      return div255(s * (255 - da) + d * (255 - sa));
+            case DARKEN:
+                return div255(s * (255 - da) + d * (255 - sa) + java.lang.Math.min(s * da, d * sa));
+            case LIGHTEN:
+                return div255(s * (255 - da) + d * (255 - sa) + java.lang.Math.max(s * da, d * sa));
+            case MULTIPLY: return (int)(((long)s * d + 32512) / 65025);
+            case SCREEN:   return s + d - (int)(((long)s * d + 32512) / 65025);
+            default:       return 0;    // CLEAR
+        }
+    }
+
+    /** x / 255, rounded */
+    private static int div255(int x) {
+        return (x + 127) / 255;
+    }
+
+    /** c is color * alpha * 255 / 255 = color * a; returns the color */
+    private static int unpremul(int c, int a) {
+        final int v = (c + (a >> 1)) / a;
+        return (v > 255) ? 255 : v;
+    }
+
+    private static void checkMode(int mode) {
+        if(mode < CLEAR || mode > SCREEN) {
+            throw new IllegalArgumentException("unknown mode : " + mode);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import android.content.Context;
+
+/**
+ * Recent and favorite colors, persisted across dialogs and processes.
+ *
+ * In memory the recent colors are a ring of ints (newest first) and the
+ * favorites a plain int array. On disk every change is appended to a log of
+ * fixed 8 byte records (opcode, color). Loading reads the whole log with a
+ * single read and replays it into the arrays, without creating an object per
+ * entry. Once the log holds more than COMPACT_THRESHOLD records it is rewritten
+ * with just the current state.
+ *
+ * I/O errors are not fatal : the colors are still kept for the process lifetime.
+ * Not thread-safe; use it from the UI thread.
+ */
+public final class RecentColors {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final String FILE_NAME = "color_picker_history.bin";
+
+    private static final int RECORD_SIZE = 8;
+    private static final int COMPACT_THRESHOLD = 256;
+
+    private static final int OP_RECENT = 1;
+    private static final int OP_FAVORITE_ADD = 2;
+    private static final int OP_FAVORITE_REMOVE = 3;
+
+    private static RecentColors sInstance;
+
+    private final File mFile;
+
+    private final int[] mRecent;
+    private int mRecentHead;
+    private int mRecentCount;
+
+    private final int[] mFavorites;
+    private int mFavoriteCount;
+
+    private int mRecordCount;
+    private final byte[] mRecord = new byte[RECORD_SIZE];
+
+    /**
+     * Returns the process wide history stored in the application's files
+     * directory, loading it on the first call.
+     */
+    public static synchronized RecentColors getInstance(Context context) {
+        if(sInstance == null) {
+            sInstance = new RecentColors(
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME), DEFAULT_CAPACITY);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param file log file; created on the first change
+     * @param capacity maximum number of recent colors, and of favorites
+     */
+    public RecentColors(File file, int capacity) {
+        mFile = file;
+        mRecent = new int[capacity];
+        mFavorites = new int[capacity];
+        load();
+    }
+
+    public int getRecentCount() {
+        return mRecentCount;
+    }
+
+    /**
+     * @param index 0 is the most recent color
+     */
+    public int getRecent(int index) {
+        return mRecent[(mRecentHead + index) % mRecent.length];
+    }
+
+    public int getFavoriteCount() {
+        return mFavoriteCount;
+    }
+
+    public int getFavorite(int index) {
+        return mFavorites[index];
+    }
+
+    public boolean isFavorite(int color) {
+        return indexOfFavorite(color) >= 0;
+    }
+
+    /**
+     * Makes color the most recent one. A color already in the list is moved
+     * to the front; when the list is full the oldest color is dropped.
+     */
+    public void addRecent(int color) {
+        if(pushRecent(color)) {
+            append(OP_RECENT, color);
+        }
+    }
+
+    /**
+     * Adds color to the favorites. Does nothing if it already is one or the
+     * favorites are full.
+     */
+    public void addFavorite(int color) {
+        if(putFavorite(color)) {
+            append(OP_FAVORITE_ADD, color);
+        }
+    }
+
+    public void removeFavorite(int color) {
+        if(deleteFavorite(color)) {
+            append(OP_FAVORITE_REMOVE, color);
+        }
+    }
+
+    private boolean pushRecent(int color) {
+        final int capacity = mRecent.length;
+        if(mRecentCount > 0 && getRecent(0) == color) {
+            return false;
+        }
+
+        // drop an existing entry by shifting the newer ones one slot back
+        int found = -1;
+        for(int i = 0; i < mRecentCount; i++) {
+            if(getRecent(i) == color) {
+                found = i;
+                break;
+            }
+        }
+        if(found >= 0) {
+            for(int i = found; i > 0; i--) {
+                mRecent[(mRecentHead + i) % capacity] = mRecent[(mRecentHead + i - 1) % capacity];
+            }
+            mRecentHead = (mRecentHead + 1) % capacity;
+            mRecentCount--;
+        }
+
+        mRecentHead = (mRecentHead + capacity - 1) % capacity;
+        mRecent[mRecentHead] = color;
+        if(mRecentCount < capacity) {
+            mRecentCount++;
+        }
+        return true;
+    }
+
+    private boolean putFavorite(int color) {
+        if(mFavoriteCount == mFavorites.length || indexOfFavorite(color) >= 0) {
+            return false;
+        }
+        mFavorites[mFavoriteCount++] = color;
+        return true;
+    }
+
+    private boolean deleteFavorite(int color) {
+        final int index = indexOfFavorite(color);
+        if(index < 0) {
+            return false;
+        }
+        System.arraycopy(mFavorites, index + 1, mFavorites, index, mFavoriteCount - index - 1);
+        mFavoriteCount--;
+        return true;
+    }
+
+    private int indexOfFavorite(int color) {
+        for(int i = 0; i < mFavoriteCount; i++) {
+            if(mFavorites[i] == color) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void load() {
+        if(!mFile.exists()) {
+            return;
+        }
+
+        final byte[] log;
+        final int read;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(mFile);
+            log = new byte[(int)mFile.length()];
+            int total = 0;
+            while(total < log.length) {
+                final int n = in.read(log, total, log.length - total);
+                if(n < 0) {
+                    break;
+                }
+                total += n;
+            }
+            read = total;
+            mRecordCount = read / RECORD_SIZE;
+        }
+        catch(IOException e) {
+            return;
+        }
+        finally {
+            close(in);
+        }
+
+        if(read % RECORD_SIZE != 0) {
+            // a torn last record from an interrupted append : cut it off, or the
+            // next append would land misaligned behind it
+            truncate(mRecordCount * RECORD_SIZE);
+        }
+
+        for(int i = 0; i < mRecordCount; i++) {
+            final int op = readInt(log, i * RECORD_SIZE);
+            final int color = readInt(log, i * RECORD_SIZE + 4);
+            switch(op) {
+                case OP_RECENT:
+                    pushRecent(color);
+                    break;
+                case OP_FAVORITE_ADD:
+                    putFavorite(color);
+                    break;
+                case OP_FAVORITE_REMOVE:
+                    deleteFavorite(color);
+                    break;
+            }
+        }
+    }
+
+    private void append(int op, int color) {
+        if(mRecordCount >= COMPACT_THRESHOLD) {
+            compact();
+            return;
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(mFile, true);
+            writeInt(mRecord, 0, op);
+            writeInt(mRecord, 4, color);
+            out.write(mRecord);
+            mRecordCount++;
+        }
+        catch(IOException e) {
+            // keep the in-memory state
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Rewrites the log with only the current state (oldest recent color first,
+     * so that replaying it rebuilds the same order) and swaps it in by rename.
+     */
+    private void compact() {
+        final int records = mRecentCount + mFavoriteCount;
+        final byte[] log = new byte[records * RECORD_SIZE];
+        int offset = 0;
+        for(int i = mRecentCount - 1; i >= 0; i--) {
+            writeInt(log, offset, OP_RECENT);
+            writeInt(log, offset + 4, getRecent(i));
+            offset += RECORD_SIZE;
+        }
+        for(int i = 0; i < mFavoriteCount; i++) {
+            writeInt(log, offset, OP_FAVORITE_ADD);
+            writeInt(log, offset + 4, mFavorites[i]);
+            offset += RECORD_SIZE;
+        }
+
+        final File tmp = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(log);
+            out.close();
+            out = null;
+            if(tmp.renameTo(mFile)) {
+                mRecordCount = records;
+            }
+        }
+        catch(IOException e) {
+            tmp.delete();
+        }
+        finally {
+            close(out);
+        }
+    }
+
+    private void truncate(long length) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            file.setLength(length);
+        }
+        catch(IOException e) {
+            // the log will be rewritten by the next compaction
+        }
+        finally {
+            close(file);
+        }
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return (b[offset] << 24) | ((b[offset + 1] & 0xFF) << 16)
+                | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] b, int offset, int value) {
+        b[offset]     = (byte)(value >>> 24);
+        b[offset + 1] = (byte)(value >>> 16);
+        b[offset + 2] = (byte)(value >>> 8);
+        b[offset + 3] = (byte)value;
+    }
+
+    private static void close(java.io.Closeable c) {
+        if(c != null) {
+            try {
+                c.close();
+            }
+            catch(IOException e) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Splits row-by-row pixel work into contiguous bands and runs them on a
+ * shared pool of daemon threads, the calling thread taking the first band.
+ *
+ * Each row must only depend on its own index, so the result is the same
+ * whatever the number of bands.
+ */
+final class RowExecutor {
+
+    interface RowTask {
+        /** processes rows [rowStart ... rowEnd) */
+        void run(int rowStart, int rowEnd);
+    }
+
+    private static RowExecutor sDefault;
+
+    private final int mThreads;
+    private final ExecutorService mExecutor;
+
+    static synchronized RowExecutor getDefault() {
+        if(sDefault == null) {
+            sDefault = new RowExecutor(Runtime.getRuntime().availableProcessors());
+        }
+        return sDefault;
+    }
+
+    RowExecutor(int threads) {
+        mThreads = java.lang.Math.max(1, threads);
+        mExecutor = (mThreads > 1) ? Executors.newFixedThreadPool(mThreads - 1, new ThreadFactory() {
+            private int mCount;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "RowExecutor #" + (++mCount));
+                t.setDaemon(true);
+                return t;
+            }
+        }) : null;
+    }
+
+    int getParallelism() {
+        return mThreads;
+    }
+
+    /**
+     * Runs task over rows [0 ... rows) and returns when every band is done.
+     * A RuntimeException thrown by any band is rethrown on the calling thread,
+     * once every band has finished.
+     */
+    void run(int rows, final RowTask task) {
+        final int bands = java.lang.Math.min(mThreads, rows);
+        if(bands <= 1) {
+            task.run(0, rows);
+            return;
+        }
+
+        final CountDownLatch done = new CountDownLatch(bands - 1);
+        final RuntimeException[] failure = new RuntimeException[1];
+
+        for(int b = 1; b < bands; b++) {
+            final int start = (int)((long)rows * b / bands);
+            final int end = (int)((long)rows * (b + 1) / bands);
+            mExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        task.run(start, end);
+                    }
+                    catch(RuntimeException e) {
+                        synchronized(failure) {
+                            failure[0] = e;
+                        }
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        try {
+            task.run(0, rows / bands);
+        }
+        finally {
+            // the other bands may still be writing, even if ours failed
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    done.await();
+                    break;
+                }
+                catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized(failure) {
+            if(failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * Table driven sRGB transfer functions. An 8 bit value round trips exactly.
+ */
+public final class SRGBTransfer {
+
+    public static final int ENCODE_SIZE = 4096;
+
+    private static final float[] DECODE = new float[256];
+    private static final byte[] ENCODE = new byte[ENCODE_SIZE];
+
+    static {
+        for(int i = 0; i < 256; i++) {
+            DECODE[i] = (float)decode(i / 255.0);
+        }
+        for(int i = 0; i < ENCODE_SIZE; i++) {
+            ENCODE[i] = (byte)java.lang.Math.round(encode((double)i / (ENCODE_SIZE - 1)) * 255);
+        }
+    }
+
+    private SRGBTransfer() {
+    }
+
+    /**
+     * Returns the linear light value [0 ... 1] of an 8 bit sRGB channel.
+     */
+    public static float toLinear(int channel) {
+        return DECODE[channel];
+    }
+
+    /**
+     * Returns the 8 bit sRGB channel of a linear light value. Values out of
+     * [0 ... 1] are pinned.
+     */
+    public static int fromLinear(float linear) {
+        if(linear <= 0) {
+            return 0;
+        }
+        if(linear >= 1) {
+            return 255;
+        }
+        return ENCODE[(int)(linear * (ENCODE_SIZE - 1) + 0.5f)] & 0xFF;
+    }
+
+    private static double decode(double v) {
+        return (v <= 0.04045) ? v / 12.92 : java.lang.Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static double encode(double v) {
+        return (v <= 0.0031308) ? v * 12.92 : 1.055 * java.lang.Math.pow(v, 1 / 2.4) - 0.055;
+    }
+}
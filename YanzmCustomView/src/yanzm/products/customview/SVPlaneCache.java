@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import android.graphics.Bitmap;
+
+/**
+ * A small LRU of rasterized saturation/value planes, keyed by hue.
+ *
+ * Each plane is rendered once into a Bitmap (saturation grows to the right,
+ * value grows downwards) so that ColorPickerView can draw it with a single blit.
+ * When the cache is full the least recently used Bitmap is re-rendered in place
+ * instead of allocating a new one.
+ */
+final class SVPlaneCache {
+
+    /** hues are cached with 1 degree granularity */
+    private static final int HUE_STEPS = 360;
+
+    private final int mWidth;
+    private final int mHeight;
+
+    private final int[] mKeys;
+    private final int[] mStamps;
+    private final Bitmap[] mBitmaps;
+    private int mClock;
+
+    private final int[] mPixels;
+    private final SVPlaneRasterizer mRasterizer;
+
+    SVPlaneCache(int width, int height, int capacity, int model) {
+        mRasterizer = new SVPlaneRasterizer(model, SVPlaneRasterizer.DEFAULT_PARALLEL_THRESHOLD);
+        mWidth = width;
+        mHeight = height;
+
+        mKeys = new int[capacity];
+        mStamps = new int[capacity];
+        mBitmaps = new Bitmap[capacity];
+        for(int i = 0; i < capacity; i++) {
+            mKeys[i] = -1;
+        }
+
+        mPixels = new int[width * height];
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return SVPlaneRasterizer.MODEL_HSV or MODEL_OKLCH
+     */
+    int getModel() {
+        return mRasterizer.getModel();
+    }
+
+    /**
+     * Returns the plane for the given hue, rendering it if it is not cached yet.
+     */
+    Bitmap get(float hue) {
+        return lookup(hueToKey(hue), null);
+    }
+
+    /**
+     * Stores a plane rasterized elsewhere (e.g. on a worker thread) for the
+     * given hue. pixels must hold width * height colors.
+     */
+    void put(float hue, int[] pixels) {
+        lookup(hueToKey(hue), pixels);
+    }
+
+    private Bitmap lookup(int key, int[] pixels) {
+        int victim = 0;
+        for(int i = 0; i < mKeys.length; i++) {
+            if(mKeys[i] == key) {
+                mStamps[i] = ++mClock;
+                return mBitmaps[i];
+            }
+            if(mStamps[i] < mStamps[victim]) {
+                victim = i;
+            }
+        }
+
+        Bitmap bitmap = mBitmaps[victim];
+        if(bitmap == null) {
+            bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mBitmaps[victim] = bitmap;
+        }
+        if(pixels != null) {
+            bitmap.setPixels(pixels, 0, mWidth, 0, 0, mWidth, mHeight);
+        }
+        else {
+            render(key, bitmap);
+        }
+
+        mKeys[victim] = key;
+        mStamps[victim] = ++mClock;
+        return bitmap;
+    }
+
+    /**
+     * Drops every cached plane and releases the native memory of the bitmaps.
+     */
+    void clear() {
+        for(int i = 0; i < mBitmaps.length; i++) {
+            if(mBitmaps[i] != null) {
+                mBitmaps[i].recycle();
+                mBitmaps[i] = null;
+            }
+            mKeys[i] = -1;
+            mStamps[i] = 0;
+        }
+        mClock = 0;
+    }
+
+    private void render(int key, Bitmap bitmap) {
+        mRasterizer.rasterize(key, mWidth, mHeight, mPixels);
+        bitmap.setPixels(mPixels, 0, mWidth, 0, 0, mWidth, mHeight);
+    }
+
+    private static int hueToKey(float hue) {
+        int key = java.lang.Math.round(hue);
+        if(key >= HUE_STEPS || key < 0) {
+            key = ((key % HUE_STEPS) + HUE_STEPS) % HUE_STEPS;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+/**
+ * Fills an ARGB buffer with the saturation/value plane of one hue, or the
+ * chroma/lightness plane in {@link #MODEL_OKLCH}. Large planes are split into
+ * row bands; the pixels do not depend on the split.
+ */
+public final class SVPlaneRasterizer {
+
+    /** planes smaller than this (in pixels) are rendered on the calling thread */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 128 * 128;
+
+    /** HSV saturation by value */
+    public static final int MODEL_HSV = 0;
+    /** OKLCH relative chroma by lightness */
+    public static final int MODEL_OKLCH = 1;
+
+    private final int mModel;
+    private final int mParallelThreshold;
+
+    public SVPlaneRasterizer() {
+        this(MODEL_HSV, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public SVPlaneRasterizer(int parallelThreshold) {
+        this(MODEL_HSV, parallelThreshold);
+    }
+
+    public SVPlaneRasterizer(int model, int parallelThreshold) {
+        if(model != MODEL_HSV && model != MODEL_OKLCH) {
+            throw new IllegalArgumentException("unknown color model : " + model);
+        }
+        mModel = model;
+        mParallelThreshold = parallelThreshold;
+    }
+
+    public int getModel() {
+        return mModel;
+    }
+
+    public int getParallelThreshold() {
+        return mParallelThreshold;
+    }
+
+    /**
+     * Renders a width x height plane into pixels, row stride = width.
+     */
+    public void rasterize(final float hue, final int width, final int height, final int[] pixels) {
+        if(pixels.length < width * height) {
+            throw new IllegalArgumentException("pixels too small : " + pixels.length
+                    + " < " + width + " x " + height);
+        }
+
+        final int model = mModel;
+        if((long)width * height < mParallelThreshold) {
+            rasterizeRows(model, hue, width, height, pixels, 0, height);
+            return;
+        }
+
+        RowExecutor.getDefault().run(height, new RowExecutor.RowTask() {
+            public void run(int rowStart, int rowEnd) {
+                rasterizeRows(model, hue, width, height, pixels, rowStart, rowEnd);
+            }
+        });
+    }
+
+    private static void rasterizeRows(int model, float hue, int width, int height, int[] pixels,
+            int rowStart, int rowEnd) {
+        if(model == MODEL_OKLCH) {
+            rasterizeOklchRows(hue, width, height, pixels, rowStart, rowEnd);
+        }
+        else {
+            rasterizeRows(hue, width, height, pixels, rowStart, rowEnd);
+        }
+    }
+
+    /**
+     * Renders rows [rowStart ... rowEnd) of a width x height plane.
+     */
+    public static void rasterizeRows(float hue, int width, int height, int[] pixels,
+            int rowStart, int rowEnd) {
+        final float step = (width > 1) ? 1f / (width - 1) : 0;
+        for(int y = rowStart; y < rowEnd; y++) {
+            final float value = (height > 1) ? (float)y / (height - 1) : 0;
+            ColorMath.hsvRowToColors(hue, 0, step, value, pixels, y * width, width);
+        }
+    }
+
+    /**
+     * Renders rows [rowStart ... rowEnd) of a width x height OKLCH plane.
+     */
+    public static void rasterizeOklchRows(float hue, int width, int height, int[] pixels,
+            int rowStart, int rowEnd) {
+        for(int y = rowStart; y < rowEnd; y++) {
+            final float lightness = (height > 1) ? (float)y / (height - 1) : 0;
+            final float step = (width > 1) ? OkLab.maxChroma(lightness, hue) / (width - 1) : 0;
+            OkLab.oklchRowToColors(lightness, 0, step, hue, pixels, y * width, width);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.ColorFilter;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Drives every running tint animation of ColorFilteredImageView from one
+ * frame loop on the main thread.
+ *
+ * A transition (from, to, mode) is resolved once into a ramp of RAMP_SIZE
+ * colors (blended in linear light), and ramps are cached, so a frame costs an
+ * index computation per view and a filter swap only when the index moves.
+ * The ramp creates its filters on first use and owns them : they stay out of
+ * ColorFilterCache, where they would evict the static tints. With color
+ * adjustments set the tint is folded into a matrix per step, likewise owned
+ * by the ramp. Retargeting to
+ * either end of a running ramp, or animating a cached ramp backwards, reuses
+ * it.
+ *
+ * UI thread only.
+ */
+final class TintAnimator {
+
+	static final int RAMP_SIZE = 64;
+
+	private static final long FRAME_INTERVAL = 16;
+	private static final int RAMP_CACHE_SIZE = 32;
+
+	private static final class Ramp {
+		final int mFrom;
+		final int mTo;
+		final PorterDuff.Mode mMode;
+		final ColorAdjustments mAdjustments;
+		final int[] mColors = new int[RAMP_SIZE];
+		private final ColorFilter[] mFilters = new ColorFilter[RAMP_SIZE];
+
+		Ramp(int from, int to, PorterDuff.Mode mode, ColorAdjustments adjustments) {
+			mFrom = from;
+			mTo = to;
+			mMode = mode;
+			mAdjustments = adjustments;
+			final int[] ends = { from, to };
+			for (int i = 0; i < RAMP_SIZE; i++) {
+				mColors[i] = HueWheel.interpColor(ends, (float) i / (RAMP_SIZE - 1), true);
+			}
+		}
+
+		ColorFilter filterAt(int index) {
+			ColorFilter filter = mFilters[index];
+			if (filter == null) {
+				if (mAdjustments == null) {
+					filter = new PorterDuffColorFilter(mColors[index], mMode);
+				} else {
+					filter = new ColorMatrixColorFilter(
+							ColorFilterCache.fold(mAdjustments, mColors[index], mMode).toMatrix());
+				}
+				mFilters[index] = filter;
+			}
+			return filter;
+		}
+
+		boolean matches(PorterDuff.Mode mode, ColorAdjustments adjustments) {
+			return mMode == mode && same(mAdjustments, adjustments);
+		}
+	}
+
+	private static final class RampKey {
+		int mFrom;
+		int mTo;
+		PorterDuff.Mode mMode;
+		ColorAdjustments mAdjustments;
+
+		RampKey set(int from, int to, PorterDuff.Mode mode, ColorAdjustments adjustments) {
+			mFrom = from;
+			mTo = to;
+			mMode = mode;
+			mAdjustments = adjustments;
+			return this;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RampKey)) {
+				return false;
+			}
+			final RampKey k = (RampKey) o;
+			return mFrom == k.mFrom && mTo == k.mTo && mMode == k.mMode
+					&& same(mAdjustments, k.mAdjustments);
+		}
+
+		@Override
+		public int hashCode() {
+			final int h = (mFrom * 31 + mTo) * 31 + mMode.ordinal();
+			return (mAdjustments != null) ? h * 31 + mAdjustments.hashCode() : h;
+		}
+	}
+
+	/** walks mRamp from index mFromIndex to mToIndex, then settles on mTo */
+	private static final class Animation {
+		final ColorFilteredImageView mView;
+		Ramp mRamp;
+		int mFromIndex;
+		int mToIndex;
+		int mTo;
+		long mStart;
+		long mDuration;
+		int mIndex;
+
+		Animation(ColorFilteredImageView view) {
+			mView = view;
+		}
+
+		void set(Ramp ramp, int fromIndex, int toIndex, int to, long start, long duration) {
+			mRamp = ramp;
+			mFromIndex = fromIndex;
+			mToIndex = toIndex;
+			mTo = to;
+			mStart = start;
+			mDuration = duration;
+			mIndex = -1;
+		}
+	}
+
+	private static final LinkedHashMap<RampKey, Ramp> sRamps = new LinkedHashMap<RampKey, Ramp>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<RampKey, Ramp> eldest) {
+			return size() > RAMP_CACHE_SIZE;
+		}
+	};
+
+	/** lookups reuse this one; a RampKey is only allocated for a new ramp */
+	private static final RampKey sLookup = new RampKey();
+
+	private static final ArrayList<Animation> sAnimations = new ArrayList<Animation>();
+
+	private static Handler sHandler;
+	private static boolean sScheduled;
+	private static long sLastFrame;
+
+	private static final Runnable sFrame = new Runnable() {
+		public void run() {
+			sScheduled = false;
+			doFrame(SystemClock.uptimeMillis());
+		}
+	};
+
+	private TintAnimator() {
+	}
+
+	/**
+	 * Starts animating view from its current tint to to. A running animation
+	 * of the view is retargeted when to is either end of its ramp, replaced
+	 * otherwise.
+	 */
+	static void start(ColorFilteredImageView view, int from, int to, PorterDuff.Mode mode,
+			ColorAdjustments adjustments, long duration) {
+		final int running = indexOf(view);
+		Animation a = null;
+		if (running >= 0) {
+			a = sAnimations.get(running);
+			final Ramp ramp = a.mRamp;
+			if (ramp.matches(mode, adjustments) && (to == ramp.mTo || to == ramp.mFrom)) {
+				// retarget along the running ramp from the step it shows
+				final int index = (a.mIndex >= 0) ? a.mIndex : a.mFromIndex;
+				final int target = (to == ramp.mTo) ? RAMP_SIZE - 1 : 0;
+				final long left = duration * java.lang.Math.abs(target - index) / (RAMP_SIZE - 1);
+				if (left > 0) {
+					a.set(ramp, index, target, to, SystemClock.uptimeMillis(), left);
+				} else {
+					removeAt(running);
+					view.onTintAnimationEnd(to);
+				}
+				return;
+			}
+			removeAt(running);
+		}
+		if (duration <= 0 || from == to) {
+			view.onTintAnimationEnd(to);
+			return;
+		}
+
+		Ramp ramp = sRamps.get(sLookup.set(from, to, mode, adjustments));
+		int fromIndex = 0;
+		int toIndex = RAMP_SIZE - 1;
+		if (ramp == null) {
+			ramp = sRamps.get(sLookup.set(to, from, mode, adjustments));
+			if (ramp != null) {
+				fromIndex = RAMP_SIZE - 1;
+				toIndex = 0;
+			} else {
+				ramp = new Ramp(from, to, mode, adjustments);
+				sRamps.put(new RampKey().set(from, to, mode, adjustments), ramp);
+			}
+		}
+
+		final long now = SystemClock.uptimeMillis();
+		if (a == null) {
+			a = new Animation(view);
+		}
+		a.set(ramp, fromIndex, toIndex, to, now, duration);
+		sAnimations.add(a);
+		if (!sScheduled) {
+			sLastFrame = now - FRAME_INTERVAL;
+			schedule(now);
+		}
+	}
+
+	/**
+	 * Stops the animation of view, leaving its tint where it is.
+	 */
+	static boolean cancel(ColorFilteredImageView view) {
+		final int i = indexOf(view);
+		if (i < 0) {
+			return false;
+		}
+		removeAt(i);
+		return true;
+	}
+
+	private static boolean same(ColorAdjustments a, ColorAdjustments b) {
+		return (a == null) ? b == null : a.equals(b);
+	}
+
+	private static int indexOf(ColorFilteredImageView view) {
+		for (int i = sAnimations.size() - 1; i >= 0; i--) {
+			if (sAnimations.get(i).mView == view) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	static int getRunningCount() {
+		return sAnimations.size();
+	}
+
+	private static void doFrame(long now) {
+		sLastFrame = now;
+		for (int i = sAnimations.size() - 1; i >= 0; i--) {
+			final Animation a = sAnimations.get(i);
+			final long elapsed = now - a.mStart;
+			if (elapsed >= a.mDuration) {
+				removeAt(i);
+				a.mView.onTintAnimationEnd(a.mTo);
+				continue;
+			}
+			final int index = a.mFromIndex + (int) ((a.mToIndex - a.mFromIndex) * elapsed / a.mDuration);
+			if (index != a.mIndex) {
+				a.mIndex = index;
+				a.mView.onTintAnimationFrame(a.mRamp.mColors[index], a.mRamp.filterAt(index));
+			}
+		}
+		if (!sAnimations.isEmpty()) {
+			schedule(now);
+		}
+	}
+
+	private static void schedule(long now) {
+		if (sHandler == null) {
+			sHandler = new Handler(Looper.getMainLooper());
+		}
+		final long delay = sLastFrame + FRAME_INTERVAL - now;
+		sHandler.postDelayed(sFrame, (delay > 0) ? delay : 0);
+		sScheduled = true;
+	}
+
+	/** order does not matter : swap with the last one */
+	private static void removeAt(int i) {
+		final int last = sAnimations.size() - 1;
+		sAnimations.set(i, sAnimations.get(last));
+		sAnimations.remove(last);
+	}
+}
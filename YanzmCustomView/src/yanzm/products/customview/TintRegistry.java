@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.view.View;
+
+/**
+ * Named tints (e.g. "accent") shared by ColorFilteredImageViews.
+ *
+ * Views that use a token are registered weakly, so the registry never keeps
+ * a view alive. {@link #setTint(String, int)} does not touch the views right
+ * away : it posts one update pass per window (root view), which gives every
+ * view of that window the shared filter in the same traversal. Setting several
+ * tokens in a row still costs one pass per window.
+ *
+ * UI thread only.
+ */
+public final class TintRegistry {
+
+	private static final HashMap<String, Integer> sTints = new HashMap<String, Integer>();
+
+	/** view -> token */
+	private static final WeakHashMap<ColorFilteredImageView, String> sViews =
+			new WeakHashMap<ColorFilteredImageView, String>();
+
+	private static final HashSet<View> sPendingRoots = new HashSet<View>();
+
+	private TintRegistry() {
+	}
+
+	/**
+	 * Defines or changes the color of token and schedules the views using it
+	 * to be re-tinted.
+	 */
+	public static void setTint(String token, int color) {
+		final Integer old = sTints.put(token, Integer.valueOf(color));
+		if (old != null && old.intValue() == color) {
+			return;
+		}
+
+		for (Map.Entry<ColorFilteredImageView, String> e : sViews.entrySet()) {
+			final ColorFilteredImageView view = e.getKey();
+			if (view == null || !token.equals(e.getValue())) {
+				continue;
+			}
+			if (view.getWindowToken() == null) {
+				// not attached : nothing to redraw yet
+				view.applyTokenTint(color);
+			} else {
+				schedule(view.getRootView());
+			}
+		}
+	}
+
+	public static boolean hasTint(String token) {
+		return sTints.containsKey(token);
+	}
+
+	public static int getTint(String token, int defaultColor) {
+		final Integer color = sTints.get(token);
+		return (color != null) ? color.intValue() : defaultColor;
+	}
+
+	static void register(ColorFilteredImageView view, String token) {
+		sViews.put(view, token);
+	}
+
+	static void unregister(ColorFilteredImageView view) {
+		sViews.remove(view);
+	}
+
+	private static void schedule(final View root) {
+		if (!sPendingRoots.add(root)) {
+			return;
+		}
+		root.post(new Runnable() {
+			public void run() {
+				sPendingRoots.remove(root);
+				update(root);
+			}
+		});
+	}
+
+	/**
+	 * Re-tints every registered view of the window. Views are collected first
+	 * since applying a tint may touch the weak map.
+	 */
+	private static void update(View root) {
+		final ArrayList<ColorFilteredImageView> views = new ArrayList<ColorFilteredImageView>();
+		for (ColorFilteredImageView view : sViews.keySet()) {
+			if (view != null && view.getRootView() == root) {
+				views.add(view);
+			}
+		}
+		for (int i = 0; i < views.size(); i++) {
+			final ColorFilteredImageView view = views.get(i);
+			final String token = sViews.get(view);
+			final Integer color = (token != null) ? sTints.get(token) : null;
+			if (color != null) {
+				view.applyTokenTint(color.intValue());
+			}
+		}
+	}
+}
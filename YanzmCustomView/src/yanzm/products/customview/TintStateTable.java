@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import android.content.res.ColorStateList;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+
+/**
+ * A ColorStateList resolved ahead of time into one filter per combination of
+ * the states a tint usually depends on : pressed, selected, focused, enabled
+ * and checked. Other states are ignored.
+ *
+ * ColorStateList cannot enumerate its entries, so all 32 combinations are
+ * resolved once; equal colors share their filter through ColorFilterCache.
+ * Looking up the filter for a drawable state allocates nothing.
+ */
+final class TintStateTable {
+
+	private static final int[] STATES = {
+		android.R.attr.state_pressed,
+		android.R.attr.state_selected,
+		android.R.attr.state_focused,
+		android.R.attr.state_enabled,
+		android.R.attr.state_checked
+	};
+
+	private static final int COMBINATIONS = 1 << STATES.length;
+
+	private final int[] mColors = new int[COMBINATIONS];
+	private final PorterDuffColorFilter[] mFilters = new PorterDuffColorFilter[COMBINATIONS];
+
+	TintStateTable(ColorStateList tints, PorterDuff.Mode mode) {
+		final int defaultColor = tints.getDefaultColor();
+		for (int mask = 0; mask < COMBINATIONS; mask++) {
+			final int[] stateSet = new int[Integer.bitCount(mask)];
+			for (int i = 0, n = 0; i < STATES.length; i++) {
+				if ((mask & (1 << i)) != 0) {
+					stateSet[n++] = STATES[i];
+				}
+			}
+			final int color = tints.getColorForState(stateSet, defaultColor);
+			mColors[mask] = color;
+			mFilters[mask] = (color != 0) ? ColorFilterCache.get(color, mode) : null;
+		}
+	}
+
+	/**
+	 * Maps a drawable state (View#getDrawableState()) to a table index.
+	 */
+	int indexOf(int[] drawableState) {
+		int mask = 0;
+		if (drawableState != null) {
+			for (int i = 0; i < drawableState.length; i++) {
+				final int state = drawableState[i];
+				for (int k = 0; k < STATES.length; k++) {
+					if (state == STATES[k]) {
+						mask |= 1 << k;
+						break;
+					}
+				}
+			}
+		}
+		return mask;
+	}
+
+	int colorAt(int index) {
+		return mColors[index];
+	}
+
+	/**
+	 * @return the shared filter, or null where the color is 0 (no tint)
+	 */
+	PorterDuffColorFilter filterAt(int index) {
+		return mFilters[index];
+	}
+}
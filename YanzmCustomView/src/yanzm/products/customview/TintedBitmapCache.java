@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Process wide LRU of pre-tinted bitmaps, bounded by the bytes they hold.
+ *
+ * A drawable is rendered once per (source, tint, mode, size) and the tint is
+ * applied on top with Canvas#drawColor(tint, mode), which gives the same
+ * pixels as drawing it through a PorterDuffColorFilter. Afterwards the
+ * result is a plain blit. BitmapDrawables are keyed by their bitmap, so copies
+ * of one resource share an entry even after ImageView has mutated them (it
+ * does when a color filter or alpha is applied). Other drawables are keyed by
+ * their ConstantState, which a mutated drawable no longer shares, and
+ * drawables without one are not cached : the drawable itself would keep its
+ * view alive through its callback.
+ *
+ * Evicted bitmaps are not recycled since a view may still be drawing them;
+ * they are left to the garbage collector. When get() returns null (no key,
+ * or a bake larger than the whole budget) nothing is rendered and the caller
+ * should draw through a color filter instead.
+ */
+public final class TintedBitmapCache {
+
+	public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+	private static int sMaxBytes = DEFAULT_MAX_BYTES;
+	private static int sBytes;
+
+	private static final LinkedHashMap<Key, Bitmap> sBitmaps = new LinkedHashMap<Key, Bitmap>(32, 0.75f, true);
+
+	/** lookups reuse this one under the lock; a Key is only allocated on insert */
+	private static final Key sLookup = new Key();
+
+	private static int sHits;
+	private static int sMisses;
+
+	private TintedBitmapCache() {
+	}
+
+	/**
+	 * Returns source, as drawn in a width x height box, tinted with tint and
+	 * mode. Renders it on a miss. Returns null if source cannot be keyed or
+	 * the bitmap would not fit in the budget. Must be called on the UI thread,
+	 * as it draws the drawable.
+	 */
+	public static synchronized Bitmap get(Drawable source, int tint, PorterDuff.Mode mode, int width, int height) {
+		final Drawable current = source.getCurrent();
+		final Object identity = (current instanceof BitmapDrawable)
+				? ((BitmapDrawable) current).getBitmap() : current.getConstantState();
+		if (identity == null) {
+			return null;
+		}
+
+		Bitmap bitmap = sBitmaps.get(sLookup.set(identity, tint, mode.ordinal(), width, height));
+		sLookup.mSource = null;
+		if (bitmap != null) {
+			sHits++;
+			return bitmap;
+		}
+		sMisses++;
+
+		if ((long) width * height * 4 > sMaxBytes) {
+			return null;
+		}
+		bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		final Canvas canvas = new Canvas(bitmap);
+		final Rect bounds = current.getBounds();
+		canvas.translate(-bounds.left, -bounds.top);
+		current.draw(canvas);
+		canvas.translate(bounds.left, bounds.top);
+		canvas.drawColor(tint, mode);
+
+		sBitmaps.put(new Key().set(identity, tint, mode.ordinal(), width, height), bitmap);
+		sBytes += bytesOf(bitmap);
+		trimTo(sMaxBytes);
+		return bitmap;
+	}
+
+	/**
+	 * Returns a tinted copy of source, computed with {@link PorterDuffCompositor}
+	 * instead of a Canvas, so it can run on any thread (e.g. to bake assets
+	 * ahead of time). The result matches drawing source through
+	 * PorterDuffColorFilter(tint, mode).
+	 */
+	public static Bitmap bake(Bitmap source, int tint, PorterDuff.Mode mode) {
+		final int width = source.getWidth();
+		final int height = source.getHeight();
+		final int[] pixels = new int[width * height];
+		source.getPixels(pixels, 0, width, 0, 0, width, height);
+		PorterDuffCompositor.tint(tint, PorterDuffCompositor.modeOf(mode.name()), pixels, width, height);
+		return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	/**
+	 * Changes the byte budget, evicting as needed.
+	 */
+	public static synchronized void setMaxBytes(int maxBytes) {
+		sMaxBytes = maxBytes;
+		trimTo(maxBytes);
+	}
+
+	public static synchronized int getMaxBytes() {
+		return sMaxBytes;
+	}
+
+	public static synchronized int getBytes() {
+		return sBytes;
+	}
+
+	public static synchronized int size() {
+		return sBitmaps.size();
+	}
+
+	public static synchronized int getHitCount() {
+		return sHits;
+	}
+
+	public static synchronized int getMissCount() {
+		return sMisses;
+	}
+
+	public static synchronized void clear() {
+		sBitmaps.clear();
+		sBytes = 0;
+		sHits = 0;
+		sMisses = 0;
+	}
+
+	private static void trimTo(int maxBytes) {
+		final Iterator<Map.Entry<Key, Bitmap>> it = sBitmaps.entrySet().iterator();
+		while (sBytes > maxBytes && it.hasNext()) {
+			sBytes -= bytesOf(it.next().getValue());
+			it.remove();
+		}
+	}
+
+	private static int bytesOf(Bitmap bitmap) {
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	private static final class Key {
+		private Object mSource;
+		private int mTint;
+		private int mMode;
+		private int mWidth;
+		private int mHeight;
+
+		Key set(Object source, int tint, int mode, int width, int height) {
+			mSource = source;
+			mTint = tint;
+			mMode = mode;
+			mWidth = width;
+			mHeight = height;
+			return this;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return mSource == k.mSource && mTint == k.mTint && mMode == k.mMode
+					&& mWidth == k.mWidth && mHeight == k.mHeight;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = System.identityHashCode(mSource);
+			h = h * 31 + mTint;
+			h = h * 31 + mMode;
+			h = h * 31 + mWidth;
+			return h * 31 + mHeight;
+		}
+	}
+}
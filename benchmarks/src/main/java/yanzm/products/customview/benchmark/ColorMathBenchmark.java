@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import yanzm.products.customview.ColorMath;
+
+/**
+ * HSV conversions behind setHSVColor, getHue and the SV plane rows, one color
+ * at a time and over a 256 x 256 buffer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorMathBenchmark {
+
+    private static final int SIDE = 256;
+
+    private int[] mColors;
+    private int[] mPixels;
+    private float[] mHSV;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mColors = new int[SIDE * SIDE];
+        for(int i = 0; i < mColors.length; i++) {
+            mColors[i] = 0xFF000000 | random.nextInt();
+        }
+        mPixels = new int[SIDE * SIDE];
+        mHSV = new float[SIDE * SIDE * 3];
+    }
+
+    private int nextColor() {
+        mIndex = (mIndex + 1) & (SIDE * SIDE - 1);
+        return mColors[mIndex];
+    }
+
+    @Benchmark
+    public int hsvToColor() {
+        final int i = mIndex = (mIndex + 1) & (SIDE * SIDE - 1);
+        return ColorMath.hsvToColor(i % 360, (i & 0xFF) / 255f, (i >> 8) / 255f);
+    }
+
+    @Benchmark
+    public float[] colorToHSV() {
+        ColorMath.colorToHSV(nextColor(), mHSV);
+        return mHSV;
+    }
+
+    @Benchmark
+    public float hue() {
+        return ColorMath.hue(nextColor());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int[] hsvRowsToColors() {
+        final float step = 1f / (SIDE - 1);
+        for(int y = 0; y < SIDE; y++) {
+            ColorMath.hsvRowToColors(200, 0, step, (float)y / (SIDE - 1), mPixels, y * SIDE, SIDE);
+        }
+        return mPixels;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void colorsToHSV(Blackhole bh) {
+        ColorMath.colorsToHSV(mColors, 0, mColors.length, mHSV, 0);
+        bh.consume(mHSV);
+    }
+}
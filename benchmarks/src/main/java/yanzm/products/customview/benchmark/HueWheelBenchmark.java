@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yanzm.products.customview.HueRotation;
+import yanzm.products.customview.HueWheel;
+
+/**
+ * The ring lookups of a drag (indexOf, indexOfHue), building the ring table
+ * (interpColor for every entry) and rotateColor.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HueWheelBenchmark {
+
+    private static final int[] RING = {
+        0xFFFF0000, 0xFFFF00FF, 0xFF0000FF, 0xFF00FFFF,
+        0xFF00FF00, 0xFFFFFF00, 0xFFFF0000
+    };
+    private static final int SAMPLES = 1024;
+
+    private HueWheel mWheel;
+    private float[] mTouches;
+    private int[] mColors;
+    private int[] mRotated;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mWheel = new HueWheel(RING);
+        final Random random = new Random(42);
+        mTouches = new float[SAMPLES * 2];
+        for(int i = 0; i < mTouches.length; i++) {
+            mTouches[i] = random.nextFloat() * 400 - 200;
+        }
+        mColors = new int[256 * 256];
+        for(int i = 0; i < mColors.length; i++) {
+            mColors[i] = 0xFF000000 | random.nextInt();
+        }
+        mRotated = new int[mColors.length];
+    }
+
+    private int next() {
+        return mIndex = (mIndex + 1) & (SAMPLES - 1);
+    }
+
+    @Benchmark
+    public int indexOf() {
+        final int i = next();
+        return mWheel.indexOf(mTouches[i * 2], mTouches[i * 2 + 1]);
+    }
+
+    @Benchmark
+    public int indexOfHue() {
+        return mWheel.indexOfHue(next() * 360f / SAMPLES);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public HueWheel buildSRGB() {
+        return new HueWheel(RING, HueWheel.DEFAULT_SIZE, false);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public HueWheel buildLinearLight() {
+        return new HueWheel(RING, HueWheel.DEFAULT_SIZE, true);
+    }
+
+    @Benchmark
+    public int rotateColor() {
+        final int i = next();
+        return HueRotation.rotate(mColors[i], i);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int[] rotateBuffer() {
+        HueRotation.rotate(mColors, 0, mRotated, 0, mColors.length, 120);
+        return mRotated;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yanzm.products.customview.OkLab;
+
+/**
+ * OKLab / OKLCH conversion cost, per color and per 256 pixel row, the gamut
+ * search, and the cube root approximation next to Math.cbrt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OkLabBenchmark {
+
+    private static final int ROW = 256;
+    private static final int SAMPLES = 4096;
+
+    private int[] mColors;
+    private float[] mInputs;
+    private float[] mLab;
+    private int[] mRow;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mColors = new int[SAMPLES];
+        mInputs = new float[SAMPLES];
+        for(int i = 0; i < SAMPLES; i++) {
+            mColors[i] = 0xFF000000 | random.nextInt();
+            mInputs[i] = random.nextFloat();
+        }
+        mLab = new float[SAMPLES * 3];
+        mRow = new int[ROW];
+    }
+
+    private int next() {
+        return mIndex = (mIndex + 1) & (SAMPLES - 1);
+    }
+
+    @Benchmark
+    public float[] colorToOklab() {
+        OkLab.colorToOklab(mColors[next()], mLab);
+        return mLab;
+    }
+
+    @Benchmark
+    public int oklchToColor() {
+        final int i = next();
+        return OkLab.oklchToColor(mInputs[i], 0.1f, i * 360f / SAMPLES);
+    }
+
+    @Benchmark
+    public int[] oklchRow() {
+        final int i = next();
+        final float lightness = mInputs[i];
+        final float chroma = OkLab.maxChroma(lightness, 30);
+        OkLab.oklchRowToColors(lightness, 0, chroma / (ROW - 1), 30, mRow, 0, ROW);
+        return mRow;
+    }
+
+    @Benchmark
+    public float[] colorsToOklabRow() {
+        OkLab.colorsToOklab(mColors, next() & ~(ROW - 1), ROW, mLab, 0);
+        return mLab;
+    }
+
+    /** paid once per row of the OKLCH plane */
+    @Benchmark
+    public float maxChroma() {
+        final int i = next();
+        return OkLab.maxChroma(mInputs[i], i * 360f / SAMPLES);
+    }
+
+    @Benchmark
+    public float cbrt() {
+        return OkLab.cbrt(mInputs[next()]);
+    }
+
+    @Benchmark
+    public double mathCbrt() {
+        return java.lang.Math.cbrt(mInputs[next()]);
+    }
+}
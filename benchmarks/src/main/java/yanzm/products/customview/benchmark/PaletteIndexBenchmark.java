@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yanzm.products.customview.ColorMath;
+import yanzm.products.customview.OkLab;
+import yanzm.products.customview.PaletteIndex;
+
+/**
+ * Nearest palette color per touch move : the k-d tree against the linear
+ * scan over precomputed OKLab values it replaces.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PaletteIndexBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({ "256", "4096" })
+    public int paletteSize;
+
+    private int[] mPalette;
+    private float[] mPaletteLab;
+    private PaletteIndex mIndex;
+    private int[] mQueries;
+    private int[] mDrag;
+    private final float[] mQuery = new float[3];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mPalette = new int[paletteSize];
+        for(int i = 0; i < paletteSize; i++) {
+            mPalette[i] = 0xFF000000 | random.nextInt();
+        }
+        mPaletteLab = new float[paletteSize * 3];
+        OkLab.colorsToOklab(mPalette, 0, paletteSize, mPaletteLab, 0);
+        mIndex = new PaletteIndex(mPalette);
+
+        mQueries = new int[QUERIES];
+        mDrag = new int[QUERIES];
+        for(int i = 0; i < QUERIES; i++) {
+            mQueries[i] = 0xFF000000 | random.nextInt();
+            mDrag[i] = ColorMath.hsvToColor(i * 360f / QUERIES, 0.8f, 0.9f);
+        }
+    }
+
+    private int nextQuery() {
+        mNext = (mNext + 1) & (QUERIES - 1);
+        return mQueries[mNext];
+    }
+
+    @Benchmark
+    public int kdTree() {
+        return mIndex.nearest(nextQuery());
+    }
+
+    /** a finger moving around the hue ring : each query is close to the last one */
+    @Benchmark
+    public int kdTreeDrag() {
+        mNext = (mNext + 1) & (QUERIES - 1);
+        return mIndex.nearest(mDrag[mNext]);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        OkLab.colorToOklab(nextQuery(), mQuery);
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for(int i = 0; i < paletteSize; i++) {
+            final float dl = mQuery[0] - mPaletteLab[i * 3];
+            final float da = mQuery[1] - mPaletteLab[i * 3 + 1];
+            final float db = mQuery[2] - mPaletteLab[i * 3 + 2];
+            final float d = dl * dl + da * da + db * db;
+            if(d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return mPalette[best];
+    }
+
+    @Benchmark
+    public PaletteIndex build() {
+        return new PaletteIndex(mPalette);
+    }
+}
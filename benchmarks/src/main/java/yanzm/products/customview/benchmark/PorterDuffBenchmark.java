@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yanzm.products.customview.PorterDuffCompositor;
+
+/**
+ * Tinting a 512 x 512 ARGB image per mode : one serial tintRow over the
+ * buffer against composite() per pixel, and against tint(), which splits
+ * it into row bands.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PorterDuffBenchmark {
+
+    private static final int SIDE = 512;
+    private static final int TINT = 0xC0336699;
+
+    @Param({ "SRC_OVER", "SRC_IN", "SRC_ATOP", "DST_OUT", "XOR", "DARKEN", "MULTIPLY", "SCREEN" })
+    public String mode;
+
+    private int mMode;
+    private int[] mSource;
+    private int[] mPixels;
+
+    @Setup
+    public void setUp() {
+        mMode = PorterDuffCompositor.modeOf(mode);
+        final Random random = new Random(42);
+        mSource = new int[SIDE * SIDE];
+        for(int i = 0; i < mSource.length; i++) {
+            mSource[i] = random.nextInt();
+        }
+        mPixels = new int[SIDE * SIDE];
+    }
+
+    @Benchmark
+    public int[] serial() {
+        System.arraycopy(mSource, 0, mPixels, 0, mSource.length);
+        PorterDuffCompositor.tintRow(TINT, mMode, mPixels, 0, mPixels, 0, mPixels.length);
+        return mPixels;
+    }
+
+    /** the tint premultiplied again for every pixel */
+    @Benchmark
+    public int[] perPixel() {
+        final int[] pixels = mPixels;
+        for(int i = 0; i < pixels.length; i++) {
+            pixels[i] = PorterDuffCompositor.composite(TINT, mSource[i], mMode);
+        }
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] parallel() {
+        System.arraycopy(mSource, 0, mPixels, 0, mSource.length);
+        PorterDuffCompositor.tint(TINT, mMode, mPixels, SIDE, SIDE);
+        return mPixels;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import yanzm.products.customview.SVPlaneRasterizer;
+
+/**
+ * The drawSVRegion loop : one full plane per call, serial against row bands
+ * on RowExecutor, for both color models.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SVPlaneBenchmark {
+
+    @Param({ "128", "256", "512" })
+    public int side;
+
+    @Param({ "0", "1" })
+    public int model;
+
+    private SVPlaneRasterizer mSerial;
+    private SVPlaneRasterizer mParallel;
+    private int[] mPixels;
+    private float mHue;
+
+    @Setup
+    public void setUp() {
+        mSerial = new SVPlaneRasterizer(model, Integer.MAX_VALUE);
+        mParallel = new SVPlaneRasterizer(model, 0);
+        mPixels = new int[side * side];
+    }
+
+    @Benchmark
+    public int[] serial() {
+        mHue = (mHue + 1) % 360;
+        mSerial.rasterize(mHue, side, side, mPixels);
+        return mPixels;
+    }
+
+    @Benchmark
+    public int[] parallel() {
+        mHue = (mHue + 1) % 360;
+        mParallel.rasterize(mHue, side, side, mPixels);
+        return mPixels;
+    }
+}
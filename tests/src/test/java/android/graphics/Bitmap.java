@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/** JVM stand-in backed by an int[] of ARGB pixels. */
+public final class Bitmap {
+
+    public enum Config {
+        ALPHA_8, RGB_565, ARGB_4444, ARGB_8888
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private int[] mPixels;
+
+    private Bitmap(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mPixels = new int[width * height];
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getPixel(int x, int y) {
+        return mPixels[y * mWidth + x];
+    }
+
+    public void setPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        for(int row = 0; row < height; row++) {
+            System.arraycopy(pixels, offset + row * stride, mPixels, (y + row) * mWidth + x, width);
+        }
+    }
+
+    public void eraseColor(int color) {
+        java.util.Arrays.fill(mPixels, color);
+    }
+
+    public void recycle() {
+        mPixels = null;
+    }
+
+    public boolean isRecycled() {
+        return mPixels == null;
+    }
+}
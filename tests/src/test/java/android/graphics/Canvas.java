@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/** JVM stand-in : draws nothing. */
+public class Canvas {
+
+    public Canvas() {
+    }
+
+    public Canvas(Bitmap bitmap) {
+    }
+
+    public void translate(float dx, float dy) {
+    }
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+    }
+
+    public void drawRect(RectF rect, Paint paint) {
+    }
+
+    public void drawOval(RectF oval, Paint paint) {
+    }
+
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+    }
+
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+    }
+
+    public void drawText(String text, float x, float y, Paint paint) {
+    }
+}
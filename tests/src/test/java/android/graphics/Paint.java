@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/** JVM stand-in : keeps the state onDraw reads back. */
+public class Paint {
+
+    public static final int ANTI_ALIAS_FLAG = 1;
+
+    public enum Style {
+        FILL, STROKE, FILL_AND_STROKE
+    }
+
+    public enum Align {
+        LEFT, CENTER, RIGHT
+    }
+
+    private int mColor = Color.BLACK;
+    private Style mStyle = Style.FILL;
+    private float mTextSize = 12;
+
+    public Paint() {
+    }
+
+    public Paint(int flags) {
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public void setColor(int color) {
+        mColor = color;
+    }
+
+    public void setAlpha(int a) {
+        mColor = (a << 24) | (mColor & 0x00FFFFFF);
+    }
+
+    public Style getStyle() {
+        return mStyle;
+    }
+
+    public void setStyle(Style style) {
+        mStyle = style;
+    }
+
+    public void setStrokeWidth(float width) {
+    }
+
+    public Shader setShader(Shader shader) {
+        return shader;
+    }
+
+    public void setTextAlign(Align align) {
+    }
+
+    public void setTextSize(float textSize) {
+        mTextSize = textSize;
+    }
+
+    public float ascent() {
+        return -0.9f * mTextSize;
+    }
+
+    public float descent() {
+        return 0.25f * mTextSize;
+    }
+}
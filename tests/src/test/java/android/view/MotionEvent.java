@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+/** JVM stand-in : a single sample without history. */
+public final class MotionEvent {
+
+    public static final int ACTION_DOWN   = 0;
+    public static final int ACTION_UP     = 1;
+    public static final int ACTION_MOVE   = 2;
+    public static final int ACTION_CANCEL = 3;
+
+    private final int mAction;
+    private final float mX;
+    private final float mY;
+
+    private MotionEvent(int action, float x, float y) {
+        mAction = action;
+        mX = x;
+        mY = y;
+    }
+
+    public static MotionEvent obtain(long downTime, long eventTime, int action,
+            float x, float y, int metaState) {
+        return new MotionEvent(action, x, y);
+    }
+
+    public final int getAction() {
+        return mAction;
+    }
+
+    public final float getX() {
+        return mX;
+    }
+
+    public final float getY() {
+        return mY;
+    }
+
+    public final int getHistorySize() {
+        return 0;
+    }
+
+    public final float getHistoricalX(int pos) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    public final float getHistoricalY(int pos) {
+        throw new IndexOutOfBoundsException();
+    }
+}
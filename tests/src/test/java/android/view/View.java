@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+/**
+ * JVM stand-in : layout sets the size and calls onSizeChanged, invalidation
+ * and posted callbacks are dropped.
+ */
+public class View {
+
+    public static class MeasureSpec {
+
+        public static final int UNSPECIFIED = 0;
+        public static final int EXACTLY     = 1 << 30;
+        public static final int AT_MOST     = 2 << 30;
+
+        private static final int MODE_MASK = 3 << 30;
+
+        public static int makeMeasureSpec(int size, int mode) {
+            return size | mode;
+        }
+
+        public static int getMode(int measureSpec) {
+            return measureSpec & MODE_MASK;
+        }
+
+        public static int getSize(int measureSpec) {
+            return measureSpec & ~MODE_MASK;
+        }
+    }
+
+    private final Context mContext;
+    private int mWidth;
+    private int mHeight;
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+
+    public View(Context context) {
+        mContext = context;
+    }
+
+    public View(Context context, AttributeSet attrs) {
+        this(context);
+    }
+
+    public View(Context context, AttributeSet attrs, int defStyle) {
+        this(context);
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public Resources getResources() {
+        return mContext.getResources();
+    }
+
+    public boolean isInEditMode() {
+        return false;
+    }
+
+    public final int getWidth() {
+        return mWidth;
+    }
+
+    public final int getHeight() {
+        return mHeight;
+    }
+
+    public final int getMeasuredWidth() {
+        return mMeasuredWidth;
+    }
+
+    public final int getMeasuredHeight() {
+        return mMeasuredHeight;
+    }
+
+    public final void measure(int widthMeasureSpec, int heightMeasureSpec) {
+        onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec));
+    }
+
+    protected final void setMeasuredDimension(int measuredWidth, int measuredHeight) {
+        mMeasuredWidth = measuredWidth;
+        mMeasuredHeight = measuredHeight;
+    }
+
+    public static int resolveSize(int size, int measureSpec) {
+        switch(MeasureSpec.getMode(measureSpec)) {
+            case MeasureSpec.EXACTLY:
+                return MeasureSpec.getSize(measureSpec);
+            case MeasureSpec.AT_MOST:
+                return java.lang.Math.min(size, MeasureSpec.getSize(measureSpec));
+            default:
+                return size;
+        }
+    }
+
+    public void layout(int l, int t, int r, int b) {
+        final int oldw = mWidth;
+        final int oldh = mHeight;
+        mWidth = r - l;
+        mHeight = b - t;
+        if(mWidth != oldw || mHeight != oldh) {
+            onSizeChanged(mWidth, mHeight, oldw, oldh);
+        }
+    }
+
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    }
+
+    protected void onDraw(Canvas canvas) {
+    }
+
+    protected void onDetachedFromWindow() {
+    }
+
+    public boolean onTouchEvent(MotionEvent event) {
+        return false;
+    }
+
+    public void invalidate() {
+    }
+
+    public void invalidate(int l, int t, int r, int b) {
+    }
+
+    public boolean post(Runnable action) {
+        return true;
+    }
+
+    public boolean postDelayed(Runnable action, long delayMillis) {
+        return true;
+    }
+
+    public boolean removeCallbacks(Runnable action) {
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The folded matrix must do what the filters it stands for do : the tint
+ * steps against PorterDuffCompositor, hue against HueRotation.
+ */
+public class ColorAdjustmentsTest {
+
+    private static final int SAMPLES = 20000;
+    /** worst channel error allowed, in 0 ... 255 : the compositor's own rounding */
+    private static final int TOLERANCE = 4;
+
+    @Test
+    public void identity() {
+        assertArrayEquals(new float[] {
+            1, 0, 0, 0, 0,
+            0, 1, 0, 0, 0,
+            0, 0, 1, 0, 0,
+            0, 0, 0, 1, 0
+        }, ColorAdjustments.IDENTITY.toMatrix(), 0);
+        assertEquals(0, ColorAdjustments.IDENTITY.size());
+    }
+
+    @Test
+    public void multiplyMatchesCompositor() {
+        final Random random = new Random(11);
+        for(int i = 0; i < SAMPLES; i++) {
+            final int tint = random.nextInt();
+            final int color = random.nextInt();
+            final int expected = PorterDuffCompositor.composite(tint, color, PorterDuffCompositor.MULTIPLY);
+            assertColorEquals(expected, apply(ColorAdjustments.IDENTITY.multiply(tint).toMatrix(), color));
+        }
+    }
+
+    @Test
+    public void fillMatchesCompositorWithOpaqueTint() {
+        final Random random = new Random(13);
+        for(int i = 0; i < SAMPLES; i++) {
+            final int tint = 0xFF000000 | random.nextInt();
+            final int color = random.nextInt();
+            final float[] m = ColorAdjustments.IDENTITY.fill(tint).toMatrix();
+            assertColorEquals(PorterDuffCompositor.composite(tint, color, PorterDuffCompositor.SRC_ATOP),
+                    apply(m, color));
+            if((color >>> 24) > 0) {
+                assertColorEquals(PorterDuffCompositor.composite(tint, color, PorterDuffCompositor.SRC_IN),
+                        apply(m, color));
+            }
+        }
+    }
+
+    @Test
+    public void hueMatchesHueRotation() {
+        final Random random = new Random(17);
+        for(int degrees = -180; degrees <= 360; degrees += 15) {
+            final float[] m = ColorAdjustments.IDENTITY.hue(degrees).toMatrix();
+            for(int i = 0; i < SAMPLES / 20; i++) {
+                final int color = random.nextInt();
+                assertColorEquals(HueRotation.rotate(color, degrees), apply(m, color));
+            }
+        }
+    }
+
+    @Test
+    public void saturationBrightnessContrast() {
+        final int gray = apply(ColorAdjustments.IDENTITY.saturation(0).toMatrix(), 0xFFFF0000);
+        assertEquals(0xFF363636, gray);     // 0.213 * 255, the red luminance weight
+
+        assertEquals(0x80FFFFFF, apply(ColorAdjustments.IDENTITY.brightness(1).toMatrix(), 0x80102030));
+        assertEquals(0xFF808080, apply(ColorAdjustments.IDENTITY.contrast(0).toMatrix(), 0xFF102030));
+    }
+
+    @Test
+    public void stepsApplyInOrder() {
+        final Random random = new Random(19);
+        final ColorAdjustments chain = ColorAdjustments.IDENTITY.hue(90).multiply(0xFF80C0FF).saturation(0.5f);
+        final float[] hue = ColorAdjustments.IDENTITY.hue(90).toMatrix();
+        final float[] multiply = ColorAdjustments.IDENTITY.multiply(0xFF80C0FF).toMatrix();
+        final float[] saturation = ColorAdjustments.IDENTITY.saturation(0.5f).toMatrix();
+        final float[] m = chain.toMatrix();
+        final float[] rgba = new float[4];
+        for(int i = 0; i < SAMPLES / 10; i++) {
+            final int color = 0xFF000000 | random.nextInt();
+            // neither clamped nor rounded in between, as one matrix does
+            unpack(color, rgba);
+            transform(hue, rgba);
+            transform(multiply, rgba);
+            transform(saturation, rgba);
+            assertEquals(pack(rgba), apply(m, color));
+        }
+        assertFalse(chain.equals(ColorAdjustments.IDENTITY.saturation(0.5f).multiply(0xFF80C0FF).hue(90)));
+    }
+
+    @Test
+    public void equalChainsAreEqual() {
+        final ColorAdjustments a = ColorAdjustments.IDENTITY.saturation(0.5f).multiply(0xFF336699);
+        final ColorAdjustments b = ColorAdjustments.IDENTITY.saturation(0.5f).multiply(0xFF336699);
+        assertNotSame(a, b);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        assertFalse(a.equals(ColorAdjustments.IDENTITY.saturation(0.5f).multiply(0xFF336698)));
+        assertFalse(a.equals(ColorAdjustments.IDENTITY.saturation(0.5f).fill(0xFF336699)));
+        assertFalse(a.equals(ColorAdjustments.IDENTITY.saturation(0.5f)));
+    }
+
+    @Test
+    public void appendingLeavesTheChainAlone() {
+        final ColorAdjustments a = ColorAdjustments.IDENTITY.contrast(1.2f);
+        final ColorAdjustments b = a.brightness(0.1f);
+        assertEquals(1, a.size());
+        assertEquals(2, b.size());
+        assertTrue(a.equals(ColorAdjustments.IDENTITY.contrast(1.2f)));
+    }
+
+    /** what ColorMatrixColorFilter does to one non-premultiplied color */
+    private static int apply(float[] m, int color) {
+        final float[] rgba = new float[4];
+        unpack(color, rgba);
+        transform(m, rgba);
+        return pack(rgba);
+    }
+
+    private static void transform(float[] m, float[] rgba) {
+        final float r = rgba[0];
+        final float g = rgba[1];
+        final float b = rgba[2];
+        final float a = rgba[3];
+        for(int row = 0; row < 4; row++) {
+            rgba[row] = m[row * 5] * r + m[row * 5 + 1] * g + m[row * 5 + 2] * b
+                    + m[row * 5 + 3] * a + m[row * 5 + 4];
+        }
+    }
+
+    private static void unpack(int color, float[] rgba) {
+        rgba[0] = ColorMath.red(color);
+        rgba[1] = ColorMath.green(color);
+        rgba[2] = ColorMath.blue(color);
+        rgba[3] = ColorMath.alpha(color);
+    }
+
+    private static int pack(float[] rgba) {
+        int result = 0;
+        for(int i = 0; i < 4; i++) {
+            final int c = java.lang.Math.max(0, java.lang.Math.min(255, java.lang.Math.round(rgba[i])));
+            result |= c << ((i == 3) ? 24 : 16 - i * 8);
+        }
+        return result;
+    }
+
+    private static void assertColorEquals(int expected, int actual) {
+        final int alpha = expected >>> 24;
+        assertTrue(Integer.toHexString(expected) + " != " + Integer.toHexString(actual),
+                java.lang.Math.abs(alpha - (actual >>> 24)) <= TOLERANCE);
+        // the compositor un-premultiplies, so faint colors are only checked for alpha
+        if(alpha < 32) {
+            return;
+        }
+        for(int shift = 0; shift <= 16; shift += 8) {
+            final int error = java.lang.Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF));
+            assertTrue(Integer.toHexString(expected) + " != " + Integer.toHexString(actual),
+                    error <= TOLERANCE);
+        }
+    }
+}
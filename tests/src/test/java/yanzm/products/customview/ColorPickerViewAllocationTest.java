@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.view.MotionEvent;
+
+/**
+ * Drives ColorPickerView#onDraw through a RecordingCanvas and fails if a
+ * steady-state frame allocates anything on the drawing thread.
+ */
+public class ColorPickerViewAllocationTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 280;
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int FRAMES = 1000;
+    /** a steady-state allocation shows in every round, a one-off VM hiccup does not */
+    private static final int ROUNDS = 3;
+
+    private com.sun.management.ThreadMXBean mThreads;
+    private ColorPickerView mView;
+    private RecordingCanvas mCanvas;
+
+    @Before
+    public void setUp() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean)threads;
+        Assume.assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+
+        mView = new ColorPickerView(new Context());
+        mView.setColor(0xFF3366CC);
+        mView.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas = new RecordingCanvas();
+    }
+
+    @Test
+    public void cachedRingAndBitmapPlane() {
+        assertSteadyStateDoesNotAllocate();
+        assertEquals(2, mCanvas.count(RecordingCanvas.BITMAP));
+    }
+
+    @Test
+    public void directRingAndShaderPlane() {
+        mView.setRingDrawMode(ColorPickerView.RING_DRAW_DIRECT);
+        mView.setSVRenderMode(ColorPickerView.SV_RENDER_SHADER);
+        assertSteadyStateDoesNotAllocate();
+        assertEquals(1, mCanvas.count(RecordingCanvas.OVAL));
+        assertEquals(1, mCanvas.count(RecordingCanvas.RECT));
+    }
+
+    @Test
+    public void oklchMode() {
+        mView.setPickerMode(ColorPickerView.PICKER_MODE_OKLCH);
+        assertSteadyStateDoesNotAllocate();
+        assertEquals(2, mCanvas.count(RecordingCanvas.BITMAP));
+    }
+
+    @Test
+    public void highlightedOKButton() {
+        // the OK button spans y 220 ... 250 of the 200 x 280 layout
+        mView.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, WIDTH / 2, 235, 0));
+        assertSteadyStateDoesNotAllocate();
+        assertEquals(2, mCanvas.count(RecordingCanvas.ROUND_RECT));
+    }
+
+    private void assertSteadyStateDoesNotAllocate() {
+        // the first frame renders the caches, the rest gets the JIT done
+        for(int i = 0; i < WARMUP_FRAMES; i++) {
+            drawFrame();
+        }
+
+        final long id = Thread.currentThread().getId();
+        final long start = mThreads.getThreadAllocatedBytes(id);
+        final long overhead = mThreads.getThreadAllocatedBytes(id) - start;
+
+        long allocated = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS && allocated > 0; round++) {
+            final long before = mThreads.getThreadAllocatedBytes(id);
+            for(int i = 0; i < FRAMES; i++) {
+                drawFrame();
+            }
+            allocated = java.lang.Math.min(allocated, mThreads.getThreadAllocatedBytes(id) - before - overhead);
+        }
+
+        assertEquals("bytes allocated by " + FRAMES + " steady-state frames", 0, allocated);
+        assertEquals(RecordingCanvas.TRANSLATE, mCanvas.opAt(0));
+        assertEquals(4, mCanvas.count(RecordingCanvas.CIRCLE));
+        assertEquals(1, mCanvas.count(RecordingCanvas.TEXT));
+    }
+
+    private void drawFrame() {
+        mCanvas.reset();
+        mView.onDraw(mCanvas);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+/**
+ * The dialog may lay the prewarmed picker out wider than prewarm() did;
+ * the ring bitmap must survive as long as the radius is the same.
+ */
+public class ColorPickerViewPrewarmTest {
+
+    private ColorPickerView mView;
+
+    @Before
+    public void setUp() {
+        mView = new ColorPickerView(new Context());
+        mView.prewarm(200, 280, null);
+    }
+
+    @Test
+    public void widerLayoutKeepsTheRing() throws Exception {
+        final Bitmap ring = ringBitmap();
+        mView.layout(0, 0, 320, 280);
+        mView.onDraw(new RecordingCanvas());
+
+        assertFalse(ringDirty());
+        assertSame(ring, ringBitmap());
+    }
+
+    @Test
+    public void smallerRadiusRendersAgain() throws Exception {
+        mView.layout(0, 0, 200, 200);
+        assertTrue(ringDirty());
+    }
+
+    private Bitmap ringBitmap() throws Exception {
+        return (Bitmap)field("mRingBitmap").get(mView);
+    }
+
+    private boolean ringDirty() throws Exception {
+        return field("mRingDirty").getBoolean(mView);
+    }
+
+    private static Field field(String name) throws Exception {
+        final Field f = ColorPickerView.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return f;
+    }
+}
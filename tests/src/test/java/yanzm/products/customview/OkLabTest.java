@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The fast paths must agree with the single color conversions, and every
+ * color must survive a round trip through OKLab.
+ */
+public class OkLabTest {
+
+    private static final int SAMPLES = 4096;
+
+    @Test
+    public void roundTrip() {
+        final Random random = new Random(42);
+        final float[] lab = new float[3];
+        for(int i = 0; i < SAMPLES; i++) {
+            final int color = 0xFF000000 | random.nextInt();
+            OkLab.colorToOklab(color, lab);
+            assertColorEquals(color, OkLab.oklabToColor(lab[0], lab[1], lab[2]));
+        }
+    }
+
+    @Test
+    public void oklchRoundTrip() {
+        final Random random = new Random(7);
+        final float[] lch = new float[3];
+        for(int i = 0; i < SAMPLES; i++) {
+            final int color = 0xFF000000 | random.nextInt();
+            OkLab.colorToOklch(color, lch);
+            assertColorEquals(color, OkLab.oklchToColor(lch[0], lch[1], lch[2]));
+        }
+    }
+
+    @Test
+    public void batchMatchesSingle() {
+        final Random random = new Random(3);
+        final int[] colors = new int[256];
+        for(int i = 0; i < colors.length; i++) {
+            colors[i] = 0xFF000000 | random.nextInt();
+        }
+        final float[] batch = new float[colors.length * 3 + 3];
+        OkLab.colorsToOklab(colors, 0, colors.length, batch, 3);
+
+        final float[] lab = new float[3];
+        final float[] expected = new float[batch.length];
+        for(int i = 0; i < colors.length; i++) {
+            OkLab.colorToOklab(colors[i], lab);
+            System.arraycopy(lab, 0, expected, 3 + i * 3, 3);
+        }
+        assertArrayEquals(expected, batch, 0);
+    }
+
+    @Test
+    public void rowMatchesSingle() {
+        final int[] row = new int[64];
+        for(float hue = 0; hue < 360; hue += 45) {
+            final float step = OkLab.maxChroma(0.6f, hue) / (row.length - 1);
+            OkLab.oklchRowToColors(0.6f, 0, step, hue, row, 0, row.length);
+            for(int x = 0; x < row.length; x++) {
+                assertColorEquals(OkLab.oklchToColor(0.6f, step * x, hue), row[x]);
+            }
+        }
+    }
+
+    @Test
+    public void maxChromaStaysInGamut() {
+        final float[] lch = new float[3];
+        // darker colors lose too much lightness to 8 bit rounding for this check
+        for(float lightness = 0.25f; lightness < 1; lightness += 0.1f) {
+            for(float hue = 0; hue < 360; hue += 15) {
+                final float chroma = OkLab.maxChroma(lightness, hue);
+                final int color = OkLab.oklchToColor(lightness, chroma, hue);
+                OkLab.colorToOklch(color, lch);
+                // pinning an out of gamut color would move its lightness
+                assertEquals("L " + lightness + ", hue " + hue, lightness, lch[0], 0.01f);
+                assertTrue(chroma > 0);
+            }
+        }
+    }
+
+    @Test
+    public void cbrt() {
+        for(float x = 1e-6f; x < 2; x *= 1.37f) {
+            assertEquals(x, OkLab.cbrt(x) * OkLab.cbrt(x) * OkLab.cbrt(x), x * 1e-5f);
+        }
+        assertEquals(0, OkLab.cbrt(0), 0);
+        assertEquals(-2, OkLab.cbrt(-8), 1e-5f);
+    }
+
+    /** one step per channel for float rounding */
+    private static void assertColorEquals(int expected, int actual) {
+        for(int shift = 0; shift < 32; shift += 8) {
+            final int e = (expected >>> shift) & 0xFF;
+            final int a = (actual >>> shift) & 0xFF;
+            assertTrue(Integer.toHexString(expected) + " != " + Integer.toHexString(actual),
+                    java.lang.Math.abs(e - a) <= 1);
+        }
+    }
+}
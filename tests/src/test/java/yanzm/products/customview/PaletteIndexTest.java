@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The k-d tree must find a color exactly as close as a linear scan does.
+ */
+public class PaletteIndexTest {
+
+    private static final int QUERIES = 2000;
+
+    @Test
+    public void matchesLinearScan() {
+        final Random random = new Random(42);
+        final int[] sizes = { 1, 2, 17, 256, 1000, 5000 };
+        for(int size : sizes) {
+            final int[] palette = new int[size];
+            for(int i = 0; i < size; i++) {
+                palette[i] = 0xFF000000 | random.nextInt();
+            }
+            assertMatchesLinearScan(palette, random);
+        }
+    }
+
+    @Test
+    public void duplicatesAndGrays() {
+        final int[] palette = new int[512];
+        for(int i = 0; i < palette.length; i++) {
+            final int v = (i / 2) & 0xFF;
+            palette[i] = 0xFF000000 | (v << 16) | (v << 8) | v;
+        }
+        assertMatchesLinearScan(palette, new Random(7));
+    }
+
+    @Test
+    public void paletteColorsMapToThemselves() {
+        final Random random = new Random(1);
+        final int[] palette = new int[300];
+        for(int i = 0; i < palette.length; i++) {
+            palette[i] = 0xFF000000 | random.nextInt();
+        }
+        final PaletteIndex index = new PaletteIndex(palette);
+        for(int color : palette) {
+            assertEquals(color, index.nearest(color));
+        }
+    }
+
+    @Test
+    public void keepsPaletteAlphaAndLeavesPaletteAlone() {
+        final int[] palette = { 0x80FF0000, 0x4000FF00, 0xFF0000FF };
+        final int[] copy = palette.clone();
+        final PaletteIndex index = new PaletteIndex(palette);
+
+        assertEquals(0x80FF0000, index.nearest(0xFFF00000));
+        assertEquals(0x4000FF00, index.nearest(0xFF10F010));
+        assertEquals(3, index.size());
+        assertArrayEquals(copy, palette);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyPalette() {
+        new PaletteIndex(new int[0]);
+    }
+
+    private static void assertMatchesLinearScan(int[] palette, Random random) {
+        final PaletteIndex index = new PaletteIndex(palette);
+        final float[] lab = new float[palette.length * 3];
+        OkLab.colorsToOklab(palette, 0, palette.length, lab, 0);
+        final float[] query = new float[3];
+
+        for(int q = 0; q < QUERIES; q++) {
+            final int color = 0xFF000000 | random.nextInt();
+            OkLab.colorToOklab(color, query);
+
+            float best = Float.MAX_VALUE;
+            for(int i = 0; i < palette.length; i++) {
+                best = java.lang.Math.min(best, distance(query, lab, i));
+            }
+
+            final int found = index.nearest(color);
+            int foundAt = -1;
+            for(int i = 0; i < palette.length && foundAt < 0; i++) {
+                if(palette[i] == found) {
+                    foundAt = i;
+                }
+            }
+            // ties may resolve to another entry, the distance must be the same
+            assertEquals("palette of " + palette.length + ", query " + Integer.toHexString(color),
+                    best, distance(query, lab, foundAt), 0);
+        }
+    }
+
+    private static float distance(float[] query, float[] lab, int i) {
+        final float dl = query[0] - lab[i * 3];
+        final float da = query[1] - lab[i * 3 + 1];
+        final float db = query[2] - lab[i * 3 + 2];
+        return dl * dl + da * da + db * db;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Every mode against a double precision reference of the premultiplied
+ * Porter-Duff (and Skia darken / lighten / multiply / screen) formulas.
+ */
+public class PorterDuffCompositorTest {
+
+    private static final int SAMPLES = 50000;
+    /** worst channel error allowed, in 0 ... 255 */
+    private static final int COLOR_TOLERANCE = 4;
+
+    @Test
+    public void matchesReference() {
+        final Random random = new Random(3);
+        for(int mode = PorterDuffCompositor.CLEAR; mode <= PorterDuffCompositor.SCREEN; mode++) {
+            for(int i = 0; i < SAMPLES; i++) {
+                int src = random.nextInt();
+                int dst = random.nextInt();
+                if(i % 4 == 0) {
+                    src |= 0xFF000000;
+                }
+                if(i % 5 == 0) {
+                    dst |= 0xFF000000;
+                }
+                assertComposite(mode, src, dst);
+            }
+        }
+    }
+
+    @Test
+    public void edgeAlphas() {
+        final int[] colors = { 0x00000000, 0x00FFFFFF, 0xFF000000, 0xFFFFFFFF, 0x80FF8000, 0x01FFFFFF, 0xFE102030 };
+        for(int mode = PorterDuffCompositor.CLEAR; mode <= PorterDuffCompositor.SCREEN; mode++) {
+            for(int src : colors) {
+                for(int dst : colors) {
+                    assertComposite(mode, src, dst);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelTintMatchesRows() {
+        final Random random = new Random(5);
+        final int width = 700;
+        final int height = 300;
+        for(int mode = PorterDuffCompositor.CLEAR; mode <= PorterDuffCompositor.SCREEN; mode++) {
+            final int[] expected = new int[width * height];
+            for(int i = 0; i < expected.length; i++) {
+                expected[i] = random.nextInt();
+            }
+            final int[] actual = expected.clone();
+            PorterDuffCompositor.tintRow(0x80FF8000, mode, expected, 0, expected, 0, expected.length);
+            PorterDuffCompositor.tint(0x80FF8000, mode, actual, width, height);
+            assertArrayEquals(PorterDuffCompositor.nameOf(mode), expected, actual);
+        }
+    }
+
+    @Test
+    public void tintRowHonorsOffsets() {
+        final Random random = new Random(9);
+        final int[] src = new int[40];
+        for(int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt();
+        }
+        final int[] dst = new int[40];
+        PorterDuffCompositor.tintRow(0x80FF8000, PorterDuffCompositor.SRC_ATOP, src, 5, dst, 12, 20);
+
+        for(int i = 0; i < dst.length; i++) {
+            final int expected = (i >= 12 && i < 32)
+                    ? PorterDuffCompositor.composite(0x80FF8000, src[i - 7], PorterDuffCompositor.SRC_ATOP)
+                    : 0;
+            assertEquals("pixel " + i, expected, dst[i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownMode() {
+        PorterDuffCompositor.composite(0, 0, PorterDuffCompositor.SCREEN + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUndersizedPixels() {
+        PorterDuffCompositor.tint(0, PorterDuffCompositor.SRC_ATOP, new int[99], 10, 10);
+    }
+
+    @Test
+    public void modeNames() {
+        for(int mode = PorterDuffCompositor.CLEAR; mode <= PorterDuffCompositor.SCREEN; mode++) {
+            assertEquals(mode, PorterDuffCompositor.modeOf(PorterDuffCompositor.nameOf(mode)));
+        }
+    }
+
+    private static void assertComposite(int mode, int src, int dst) {
+        final int actual = PorterDuffCompositor.composite(src, dst, mode);
+        final double sa = (src >>> 24) / 255.0;
+        final double da = (dst >>> 24) / 255.0;
+        final int alpha = actual >>> 24;
+
+        final double expectedAlpha = reference(mode, sa, 0, da, 0)[0];
+        final String message = PorterDuffCompositor.nameOf(mode) + " " + Integer.toHexString(src)
+                + " over " + Integer.toHexString(dst) + " = " + Integer.toHexString(actual);
+        assertEquals(message, (int)java.lang.Math.round(expectedAlpha * 255), alpha);
+
+        // un-premultiplying amplifies rounding, so colors are checked where they are visible
+        if(alpha < 32) {
+            return;
+        }
+        for(int shift = 0; shift <= 16; shift += 8) {
+            final double s = ((src >> shift) & 0xFF) / 255.0 * sa;
+            final double d = ((dst >> shift) & 0xFF) / 255.0 * da;
+            final double[] expected = reference(mode, sa, s, da, d);
+            final int channel = (int)java.lang.Math.round(java.lang.Math.min(1, expected[1] / expected[0]) * 255);
+            final int error = java.lang.Math.abs(channel - ((actual >> shift) & 0xFF));
+            assertTrue(message + ", channel error " + error, error <= COLOR_TOLERANCE);
+        }
+    }
+
+    /**
+     * @return { alpha, premultiplied color } for premultiplied inputs in 0 ... 1
+     */
+    private static double[] reference(int mode, double sa, double s, double da, double d) {
+        switch(mode) {
+            case PorterDuffCompositor.CLEAR:    return new double[] { 0, 0 };
+            case PorterDuffCompositor.SRC:      return new double[] { sa, s };
+            case PorterDuffCompositor.DST:      return new double[] { da, d };
+            case PorterDuffCompositor.SRC_OVER: return new double[] { sa + da - sa * da, s + d * (1 - sa) };
+            case PorterDuffCompositor.DST_OVER: return new double[] { sa + da - sa * da, d + s * (1 - da) };
+            case PorterDuffCompositor.SRC_IN:   return new double[] { sa * da, s * da };
+            case PorterDuffCompositor.DST_IN:   return new double[] { sa * da, d * sa };
+            case PorterDuffCompositor.SRC_OUT:  return new double[] { sa * (1 - da), s * (1 - da) };
+            case PorterDuffCompositor.DST_OUT:  return new double[] { da * (1 - sa), d * (1 - sa) };
+            case PorterDuffCompositor.SRC_ATOP: return new double[] { da, s * da + d * (1 - sa) };
+            case PorterDuffCompositor.DST_ATOP: return new double[] { sa, d * sa + s * (1 - da) };
+            case PorterDuffCompositor.XOR:      return new double[] { sa + da - 2 * sa * da, s * (1 - da) + d * (1 - sa) };
+            case PorterDuffCompositor.DARKEN:
+                return new double[] { sa + da - sa * da,
+                        s * (1 - da) + d * (1 - sa) + java.lang.Math.min(s * da, d * sa) };
+            case PorterDuffCompositor.LIGHTEN:
+                return new double[] { sa + da - sa * da,
+                        s * (1 - da) + d * (1 - sa) + java.lang.Math.max(s * da, d * sa) };
+            case PorterDuffCompositor.MULTIPLY: return new double[] { sa * da, s * d };
+            default:                            return new double[] { sa + da - sa * da, s + d - s * d };
+        }
+    }
+}
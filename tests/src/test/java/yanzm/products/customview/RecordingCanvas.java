@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+/**
+ * Canvas stand-in that records the kind of every draw call into a fixed
+ * array, so recording a frame allocates nothing itself.
+ */
+class RecordingCanvas extends Canvas {
+
+    static final int TRANSLATE = 1;
+    static final int BITMAP = 2;
+    static final int RECT = 3;
+    static final int OVAL = 4;
+    static final int CIRCLE = 5;
+    static final int ROUND_RECT = 6;
+    static final int TEXT = 7;
+
+    private final int[] mOps = new int[64];
+    private int mCount;
+
+    void reset() {
+        mCount = 0;
+    }
+
+    int count() {
+        return mCount;
+    }
+
+    int opAt(int index) {
+        return mOps[index];
+    }
+
+    int count(int op) {
+        int n = 0;
+        for(int i = 0; i < mCount; i++) {
+            if(mOps[i] == op) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void record(int op) {
+        if(mCount < mOps.length) {
+            mOps[mCount] = op;
+        }
+        mCount++;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        record(TRANSLATE);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        if(bitmap == null || bitmap.isRecycled()) {
+            throw new IllegalStateException("drawing a missing or recycled bitmap");
+        }
+        record(BITMAP);
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        record(RECT);
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        record(OVAL);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        record(CIRCLE);
+    }
+
+    @Override
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        record(ROUND_RECT);
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, Paint paint) {
+        record(TEXT);
+    }
+}
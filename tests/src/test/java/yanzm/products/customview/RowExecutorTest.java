@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Bands cover every row once, and run() only returns (or throws) once all
+ * of them are done.
+ */
+public class RowExecutorTest {
+
+    @Test
+    public void bandsCoverEveryRowOnce() {
+        final RowExecutor executor = new RowExecutor(4);
+        for(int rows = 1; rows <= 9; rows++) {
+            final AtomicInteger[] visits = new AtomicInteger[rows];
+            for(int i = 0; i < rows; i++) {
+                visits[i] = new AtomicInteger();
+            }
+            executor.run(rows, new RowExecutor.RowTask() {
+                public void run(int rowStart, int rowEnd) {
+                    for(int row = rowStart; row < rowEnd; row++) {
+                        visits[row].incrementAndGet();
+                    }
+                }
+            });
+            for(int i = 0; i < rows; i++) {
+                assertEquals(rows + " rows, row " + i, 1, visits[i].get());
+            }
+        }
+    }
+
+    @Test
+    public void callerFailureWaitsForOtherBands() {
+        final RowExecutor executor = new RowExecutor(4);
+        final RuntimeException failure = new IllegalStateException("first band");
+        final AtomicInteger finished = new AtomicInteger();
+        try {
+            executor.run(4, new RowExecutor.RowTask() {
+                public void run(int rowStart, int rowEnd) {
+                    if(rowStart == 0) {
+                        throw failure;
+                    }
+                    try {
+                        Thread.sleep(100);
+                    }
+                    catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finished.incrementAndGet();
+                }
+            });
+            fail("the first band's exception was swallowed");
+        }
+        catch(IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(3, finished.get());
+    }
+
+    @Test
+    public void workerFailureIsRethrown() {
+        final RowExecutor executor = new RowExecutor(4);
+        final RuntimeException failure = new IllegalStateException("last band");
+        try {
+            executor.run(4, new RowExecutor.RowTask() {
+                public void run(int rowStart, int rowEnd) {
+                    if(rowEnd == 4) {
+                        throw failure;
+                    }
+                }
+            });
+            fail("the last band's exception was swallowed");
+        }
+        catch(IllegalStateException e) {
+            assertSame(failure, e);
+        }
+    }
+}
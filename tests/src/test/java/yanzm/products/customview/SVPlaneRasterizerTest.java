@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2011 The yanzm Custom View Project
+ *      Yuki Anzai, uPhyca Inc.
+ *      http://www.uphyca.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package yanzm.products.customview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Row bands on RowExecutor must give exactly the serial plane.
+ */
+public class SVPlaneRasterizerTest {
+
+    private static final int[][] SIZES = {
+        { 1, 1 }, { 3, 7 }, { 64, 64 }, { 257, 129 }, { 300, 300 }
+    };
+    private static final float[] HUES = { 0, 59.5f, 120, 200.25f, 359.9f };
+
+    @Test
+    public void parallelMatchesSerialHSV() {
+        assertParallelMatchesSerial(SVPlaneRasterizer.MODEL_HSV);
+    }
+
+    @Test
+    public void parallelMatchesSerialOklch() {
+        assertParallelMatchesSerial(SVPlaneRasterizer.MODEL_OKLCH);
+    }
+
+    @Test
+    public void hsvCorners() {
+        final int side = 64;
+        final int[] pixels = new int[side * side];
+        new SVPlaneRasterizer(SVPlaneRasterizer.MODEL_HSV, Integer.MAX_VALUE).rasterize(200, side, side, pixels);
+
+        // saturation grows to the right, value downwards
+        assertEquals(0xFF000000, pixels[0]);
+        assertEquals(0xFF000000, pixels[side - 1]);
+        assertEquals(0xFFFFFFFF, pixels[(side - 1) * side]);
+        assertEquals(ColorMath.hsvToColor(200, 1, 1), pixels[side * side - 1]);
+    }
+
+    @Test
+    public void oklchCorners() {
+        final int side = 64;
+        final int[] pixels = new int[side * side];
+        new SVPlaneRasterizer(SVPlaneRasterizer.MODEL_OKLCH, Integer.MAX_VALUE).rasterize(200, side, side, pixels);
+
+        // lightness grows downwards, and there is no chroma left at either end
+        assertEquals(0xFF000000, pixels[0]);
+        assertEquals(0xFF000000, pixels[side - 1]);
+        assertEquals(0xFFFFFFFF, pixels[(side - 1) * side]);
+        assertEquals(0xFFFFFFFF, pixels[side * side - 1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUndersizedPixels() {
+        new SVPlaneRasterizer().rasterize(0, 10, 10, new int[99]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownModel() {
+        new SVPlaneRasterizer(2, 0);
+    }
+
+    private static void assertParallelMatchesSerial(int model) {
+        final SVPlaneRasterizer serial = new SVPlaneRasterizer(model, Integer.MAX_VALUE);
+        final SVPlaneRasterizer parallel = new SVPlaneRasterizer(model, 0);
+        for(int[] size : SIZES) {
+            final int width = size[0];
+            final int height = size[1];
+            for(float hue : HUES) {
+                final int[] expected = new int[width * height];
+                final int[] actual = new int[width * height];
+                serial.rasterize(hue, width, height, expected);
+                parallel.rasterize(hue, width, height, actual);
+                assertArrayEquals("model " + model + ", " + width + " x " + height + ", hue " + hue,
+                        expected, actual);
+            }
+        }
+    }
+}